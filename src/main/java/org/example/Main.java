@@ -1,6 +1,7 @@
 package org.example;
 
 import org.example.manager.http.HttpTaskServer;
+import org.example.server.HttpServerSettings;
 import org.example.server.KVServer;
 
 import java.io.IOException;
@@ -8,6 +9,7 @@ import java.io.IOException;
 public class Main {
 
     public static void main(String[] args) throws IOException {
+        HttpServerSettings.applyForConcurrentClients();
         new KVServer().start();
         HttpTaskServer httpTaskServer = new HttpTaskServer();
         httpTaskServer.start();
@@ -0,0 +1,342 @@
+package org.example.manager.adapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.tasks.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Задачи в json без отражения и без дерева JsonElement: поля пишутся и читаются потоком.
+ * Первым полем пишется тип задачи, по нему при чтении создается Task, Epic или Subtask,
+ * так что List<Task> восстанавливается с эпиками и подзадачами. Если типа в json нет, берется объявленный класс.
+ * Время - строка ISO, продолжительность - число секунд, с дробной частью только при наносекундах.
+ * Время в годах 0000-9999 пишется и разбирается по позициям символов, остальное - через ISO_LOCAL_DATE_TIME.
+ * Продолжительность в прежнем виде объекта seconds/nanos тоже читается.
+ */
+public class TaskAdapterFactory implements TypeAdapterFactory {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        final Class<? super T> rawType = type.getRawType();
+        if (!Task.class.isAssignableFrom(rawType)) {
+            return null;
+        }
+        return (TypeAdapter<T>) new TaskAdapter(rawType);
+    }
+
+    private static final class TaskAdapter extends TypeAdapter<Task> {
+        private final Class<?> declaredType;
+        private final TypesTasks defaultType;
+
+        private TaskAdapter(Class<?> declaredType) {
+            this.declaredType = declaredType;
+            if (Epic.class.isAssignableFrom(declaredType)) {
+                defaultType = TypesTasks.EPIC;
+            } else if (Subtask.class.isAssignableFrom(declaredType)) {
+                defaultType = TypesTasks.SUBTASK;
+            } else {
+                defaultType = TypesTasks.TASK;
+            }
+        }
+
+        @Override
+        public void write(JsonWriter out, Task task) throws IOException {
+            if (task == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("type").value(task.getType().name());
+            out.name("id").value(task.getId());
+            out.name("name").value(task.getNameTask());
+            out.name("description").value(task.getDescription());
+            out.name("status").value(task.getStatus() == null ? null : task.getStatus().name());
+            if (task instanceof Subtask) {
+                out.name("epicId").value(task.getEpicId());
+            }
+            if (task instanceof Epic) {
+                out.name("idsOfSubtasksEpic").beginArray();
+                final List<Long> ids = ((Epic) task).getIdsOfSubtasksEpic();
+                for (int i = 0; i < ids.size(); i++) {
+                    out.value(ids.get(i).longValue());
+                }
+                out.endArray();
+            }
+            out.name("startTime");
+            writeDateTime(out, task.getStartTime());
+            out.name("duration");
+            writeDuration(out, task.getDuration());
+            if (task instanceof Epic) {
+                out.name("endTime");
+                writeDateTime(out, task.getEndTime());
+            }
+            out.endObject();
+        }
+
+        @Override
+        public Task read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TypesTasks type = defaultType;
+            long id = 0;
+            String name = null;
+            String description = null;
+            Status status = null;
+            long epicId = 0;
+            long[] ids = new long[0];
+            LocalDateTime startTime = null;
+            Duration duration = null;
+            LocalDateTime endTime = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type":
+                        final String typeName = nextString(in);
+                        type = typeName == null ? defaultType : TypesTasks.valueOf(typeName);
+                        break;
+                    case "id":
+                        id = in.nextLong();
+                        break;
+                    case "name":
+                        name = nextString(in);
+                        break;
+                    case "description":
+                        description = nextString(in);
+                        break;
+                    case "status":
+                        final String statusName = nextString(in);
+                        status = statusName == null ? null : Status.valueOf(statusName);
+                        break;
+                    case "epicId":
+                        epicId = in.nextLong();
+                        break;
+                    case "idsOfSubtasksEpic":
+                        ids = readIds(in);
+                        break;
+                    case "startTime":
+                        startTime = readDateTime(in);
+                        break;
+                    case "duration":
+                        duration = readDuration(in);
+                        break;
+                    case "endTime":
+                        endTime = readDateTime(in);
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+
+            final Task task;
+            switch (type) {
+                case EPIC:
+                    Epic epic = new Epic(name, description);
+                    epic.setIdsOfSubtasksEpic(ids);
+                    task = epic;
+                    break;
+                case SUBTASK:
+                    task = new Subtask(name, description, epicId);
+                    break;
+                default:
+                    task = new Task(name, description);
+                    break;
+            }
+            if (!declaredType.isInstance(task)) {
+                throw new JsonParseException("Задача типа " + type + " не подходит для " + declaredType.getSimpleName());
+            }
+            task.setId(id);
+            task.setStatus(status);
+            task.setStartTime(startTime);
+            task.setDuration(duration);
+            if (task instanceof Epic) {
+                ((Epic) task).setEndTime(endTime);
+            }
+            return task;
+        }
+    }
+
+    private static String nextString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static long[] readIds(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return new long[0];
+        }
+        long[] ids = new long[8];
+        int size = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = in.nextLong();
+        }
+        in.endArray();
+        return Arrays.copyOf(ids, size);
+    }
+
+    private static void writeDateTime(JsonWriter out, LocalDateTime dateTime) throws IOException {
+        if (dateTime == null) {
+            out.nullValue();
+        } else {
+            out.value(formatDateTime(dateTime));
+        }
+    }
+
+    private static LocalDateTime readDateTime(JsonReader in) throws IOException {
+        final String value = nextString(in);
+        return value == null ? null : parseDateTime(value);
+    }
+
+    /**
+     * То же, что ISO_LOCAL_DATE_TIME: секунды всегда, доли секунды без конечных нулей
+     */
+    static String formatDateTime(LocalDateTime dateTime) {
+        final int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            return FORMATTER.format(dateTime);
+        }
+        final char[] chars = new char[29];
+        appendDigits(chars, 0, year, 4);
+        chars[4] = '-';
+        appendDigits(chars, 5, dateTime.getMonthValue(), 2);
+        chars[7] = '-';
+        appendDigits(chars, 8, dateTime.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        appendDigits(chars, 11, dateTime.getHour(), 2);
+        chars[13] = ':';
+        appendDigits(chars, 14, dateTime.getMinute(), 2);
+        chars[16] = ':';
+        appendDigits(chars, 17, dateTime.getSecond(), 2);
+        int length = 19;
+        int nano = dateTime.getNano();
+        if (nano != 0) {
+            chars[19] = '.';
+            appendDigits(chars, 20, nano, 9);
+            length = 29;
+            while (chars[length - 1] == '0') {
+                length--;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * Разбор yyyy-MM-ddTHH:mm[:ss[.n]], иначе ISO_LOCAL_DATE_TIME
+     */
+    static LocalDateTime parseDateTime(String value) {
+        final int length = value.length();
+        if (length < 16 || value.charAt(4) != '-' || value.charAt(7) != '-' || value.charAt(10) != 'T'
+                || value.charAt(13) != ':' || (length > 16 && (length < 19 || value.charAt(16) != ':'))
+                || (length > 19 && (length < 21 || length > 29 || value.charAt(19) != '.'))) {
+            return LocalDateTime.parse(value, FORMATTER);
+        }
+        try {
+            final int second = length > 16 ? parseDigits(value, 17, 19) : 0;
+            int nano = 0;
+            if (length > 19) {
+                nano = parseDigits(value, 20, length);
+                for (int i = length; i < 29; i++) {
+                    nano *= 10;
+                }
+            }
+            return LocalDateTime.of(parseDigits(value, 0, 4), parseDigits(value, 5, 7), parseDigits(value, 8, 10),
+                    parseDigits(value, 11, 13), parseDigits(value, 14, 16), second, nano);
+        } catch (NumberFormatException e) {
+            return LocalDateTime.parse(value, FORMATTER);
+        }
+    }
+
+    private static void appendDigits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int parseDigits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException(value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Продолжительность числом секунд: целым, если наносекунд нет, иначе точной десятичной дробью
+     */
+    private static void writeDuration(JsonWriter out, Duration duration) throws IOException {
+        if (duration == null) {
+            out.nullValue();
+        } else if (duration.getNano() == 0) {
+            out.value(duration.getSeconds());
+        } else {
+            out.value(BigDecimal.valueOf(duration.getSeconds()).add(BigDecimal.valueOf(duration.getNano(), 9)));
+        }
+    }
+
+    private static Duration readDuration(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BEGIN_OBJECT:
+                long seconds = 0;
+                int nanos = 0;
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "seconds":
+                            seconds = in.nextLong();
+                            break;
+                        case "nanos":
+                            nanos = in.nextInt();
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+                return Duration.ofSeconds(seconds, nanos);
+            default:
+                final String value = in.nextString();
+                if (value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+                    return Duration.ofSeconds(Long.parseLong(value));
+                }
+                final BigDecimal exact = new BigDecimal(value);
+                final BigDecimal wholeSeconds = exact.setScale(0, RoundingMode.FLOOR);
+                return Duration.ofSeconds(wholeSeconds.longValueExact(),
+                        exact.subtract(wholeSeconds).movePointRight(9).intValueExact());
+        }
+    }
+}
@@ -1,86 +1,320 @@
 package org.example.manager.http;
 
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.example.manager.exceptions.ManagerSaveException;
 import org.example.manager.interfaces_and_utilities.Managers;
 import org.example.manager.managers_types.FileBackedTasksManager;
+import org.example.manager.managers_types.LongMap;
 import org.example.tasks.Epic;
 import org.example.tasks.Subtask;
 import org.example.tasks.Task;
 import org.example.tasks.TypesTasks;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/**
+ * Менеджер с хранением на KV-сервере. На сервере лежит снимок в ключе snapshot, номер снимка в ключе version
+ * и журнал операций с момента снимка в ключе journal.{version}.
+ * Каждая операция дописывает в журнал только свою запись, снимок переписывается при свертке журнала.
+ * Снимок - один документ {"version": N, "tasks": [...], "history": [...]}: номер снимка, задачи всех типов
+ * с полем type, эпики раньше своих подзадач, затем id истории. Документ читается за один проход прямо
+ * из ответа сервера. Снимки старого вида (ключи tasks, epics, subtasks, history) тоже читаются.
+ */
 public class HttpTaskManager extends FileBackedTasksManager {
+    private static final String SNAPSHOT_KEY = "snapshot";
+    private static final String TASKS_KEY = "tasks";
+    private static final String EPICS_KEY = "epics";
+    private static final String SUBTASKS_KEY = "subtasks";
+    private static final String HISTORY_KEY = "history";
+    private static final String VERSION_KEY = "version";
+    private static final String JOURNAL_KEY = "journal.";
+
     private final Gson gson;
+    private final TypeAdapter<Task> taskAdapter;
     private final KVTaskClient client;
+    private final int compactionThreshold;
+    private long version;
+    private int journalRecords;
+    private boolean snapshotSaved;
 
     public HttpTaskManager(String url) {
-        super(null);
+        this(url, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param compactionThreshold количество записей в журнале, после которого журнал сворачивается в снимок
+     */
+    public HttpTaskManager(String url, int compactionThreshold) {
+        this(url, compactionThreshold, null);
+    }
+
+    /**
+     * Менеджер для уже выданного токена, например для загрузки после перезапуска
+     */
+    public HttpTaskManager(String url, String apiToken) {
+        this(url, DEFAULT_COMPACTION_THRESHOLD, apiToken);
+    }
+
+    /**
+     * @param apiToken токен пространства ключей на сервере; null - получить новый
+     */
+    public HttpTaskManager(String url, int compactionThreshold, String apiToken) {
+        super(null, compactionThreshold);
+        this.compactionThreshold = compactionThreshold;
         gson = Managers.getGson();
-        client = new KVTaskClient(url);
+        taskAdapter = gson.getAdapter(Task.class);
+        client = apiToken == null ? new KVTaskClient(url) : new KVTaskClient(url, apiToken);
 //        load();
     }
 
-    protected void addTasks(List<? extends Task> tasks) {
-        for (Task task : tasks) {
-            final long id = task.getId();
-            if (id > createdID) {
-                createdID = id;
-            }
-            TypesTasks type = task.getType();
-            if (type == TypesTasks.TASK) {
-                allTasks.put(id, task);
-                addTasksInPrioritizedList(task);
-            } else if (type == TypesTasks.SUBTASK) {
-                allSubtasks.put(id, (Subtask) task);
-                addTasksInPrioritizedList(task);
-            } else if (type == TypesTasks.EPIC) {
-                allEpicTasks.put(id, (Epic) task);
+    /**
+     * Токен пространства ключей менеджера на сервере
+     */
+    public String getApiToken() {
+        return client.getApiToken();
+    }
+
+    /**
+     * Добавление задачи из снимка. Задача попадает и в index, по которому потом восстанавливается история.
+     */
+    protected void addTask(Task task, LongMap<Task> index) {
+        final long id = task.getId();
+        advanceCreatedID(id);
+        index.put(id, task);
+        TypesTasks type = task.getType();
+        if (type == TypesTasks.TASK) {
+            allTasks.put(id, task);
+            addTasksInPrioritizedList(task);
+        } else if (type == TypesTasks.SUBTASK) {
+            allSubtasks.put(id, (Subtask) task);
+            addTasksInPrioritizedList(task);
+            Epic epic = allEpicTasks.get(task.getEpicId());
+            if (epic != null) {
+                epic.includeInRollup((Subtask) task);
             }
+        } else if (type == TypesTasks.EPIC) {
+            allEpicTasks.put(id, (Epic) task);
         }
     }
 
+    /**
+     * Загрузка с сервера: снимок с номером одним запросом, затем журнал этого номера. Журнал, повтор которого
+     * остановился на испорченной записи, сразу сворачивается в новый снимок
+     */
     public void load() {
-        ArrayList<Task> tasks = gson.fromJson(client.load("tasks"),
-                new TypeToken<ArrayList<Task>>() {
-                }.getType());
-        addTasks(tasks);
-
-        ArrayList<Epic> epics = gson.fromJson(client.load("epics"),
-                new TypeToken<ArrayList<Epic>>() {
-                }.getType());
-        addTasks(epics);
-
-        ArrayList<Subtask> subtasks = gson.fromJson(client.load("subtasks"),
-                new TypeToken<ArrayList<Subtask>>() {
-                }.getType());
-        addTasks(subtasks);
-
-        List<Integer> history = gson.fromJson(client.load("history"),
-                new TypeToken<ArrayList<Integer>>() {
-                }.getType());
-
-        for (Integer integer : history) {
-            historyManager.add(getTaskByIdWithoutStory(integer));
-            historyManager.add(getEpicByIdWithoutStory(integer));
-            historyManager.add(getSubtaskByIdWithoutStory(integer));
+        LongMap<Task> index = new LongMap<>();
+        try (Reader document = client.openIfPresent(SNAPSHOT_KEY)) {
+            if (document != null) {
+                readSnapshot(document, index);
+            } else {
+                loadPreviousSnapshot(index);
+            }
+        } catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+            throw new ManagerSaveException("Ошибка в снимке задач", e);
+        }
+
+        String journal = client.loadIfPresent(journalKey(version));
+        JournalReplay replay = null;
+        if (journal != null) {
+            try {
+                replay = replayJournal(new StringReader(journal));
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка в журнале: " + journalKey(version), e);
+            }
+            journalRecords = replay.getRecords();
+        }
+        snapshotSaved = true;
+        if (replay != null && !replay.isComplete()) {
+            compact();
         }
     }
 
+    /**
+     * Снимок старого вида: массивы задач по типам и история в отдельных ключах
+     */
+    private void loadPreviousSnapshot(LongMap<Task> index) throws IOException {
+        Map<String, String> snapshot = client.loadAll(
+                List.of(VERSION_KEY, TASKS_KEY, EPICS_KEY, SUBTASKS_KEY, HISTORY_KEY));
+        if (!snapshot.keySet().containsAll(List.of(TASKS_KEY, EPICS_KEY, SUBTASKS_KEY, HISTORY_KEY))) {
+            throw new ManagerSaveException("На сервере нет снимка задач, найдены ключи " + snapshot.keySet());
+        }
+        String storedVersion = snapshot.get(VERSION_KEY);
+        version = storedVersion == null ? 0 : Long.parseLong(storedVersion);
+        readTasks(snapshot.get(EPICS_KEY), index);
+        readTasks(snapshot.get(TASKS_KEY), index);
+        readTasks(snapshot.get(SUBTASKS_KEY), index);
+        readHistory(snapshot.get(HISTORY_KEY), index);
+    }
+
+    /**
+     * Запись операций в журнал на сервере. Первая запись нового менеджера и каждые compactionThreshold
+     * записей сворачивают журнал в снимок.
+     */
+    @Override
+    protected void writeToJournal(String... records) {
+        if (isReplaying()) {
+            return;
+        }
+        if (!snapshotSaved) {
+            compact();
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String record : records) {
+            sb.append(record).append('\n');
+        }
+        client.append(journalKey(version), sb.toString());
+        journalRecords += records.length;
+        if (journalRecords >= compactionThreshold) {
+            compact();
+        }
+    }
+
+    /**
+     * Просмотры пишутся на сервер под монитором менеджера: номер и счетчик записей журнала меняются только под ним.
+     */
+    @Override
+    protected synchronized void recordView(Task task) {
+        super.recordView(task);
+    }
+
+    @Override
+    protected void writeViewToJournal(String record) {
+        writeToJournal(record);
+    }
+
+    /**
+     * Свертка журнала: снимок вместе с новым номером сохраняется одним запросом, старый журнал удаляется.
+     * Журнал нового номера очищается до смены номера, чтобы не подхватить записи другого менеджера.
+     */
+    @Override
+    public synchronized void compact() {
+        final long nextVersion = version + 1;
+        client.delete(journalKey(nextVersion));
+        Map<String, String> snapshot = snapshot(nextVersion);
+        snapshot.put(VERSION_KEY, String.valueOf(nextVersion));
+        client.saveAll(snapshot);
+        client.delete(journalKey(version));
+        version = nextVersion;
+        journalRecords = 0;
+        snapshotSaved = true;
+    }
+
+    /**
+     * Сохранение снимка на сервер одним запросом
+     */
     @Override
     protected void save() {
-        String jsonTasks = gson.toJson(new ArrayList<>(allTasks.values()));
-        client.put("tasks", jsonTasks);
-        String jsonEpics = gson.toJson(new ArrayList<>(allEpicTasks.values()));
-        client.put("epics", jsonEpics);
-        String jsonSubtasks = gson.toJson(new ArrayList<>(allSubtasks.values()));
-        client.put("subtasks", jsonSubtasks);
-
-        String jsonHistory = gson.toJson(historyManager.getHistory()
-                .stream().map(Task::getId).collect(Collectors.toList()));
-        client.put("history", jsonHistory);
+        client.saveAll(snapshot(version));
+    }
+
+    private Map<String, String> snapshot(long version) {
+        StringWriter document = new StringWriter();
+        try (JsonWriter writer = gson.newJsonWriter(document)) {
+            writer.beginObject();
+            writer.name(VERSION_KEY).value(version);
+            writer.name(TASKS_KEY).beginArray();
+            for (Epic epic : allEpicTasks.values()) {
+                taskAdapter.write(writer, epic);
+            }
+            for (Task task : allTasks.values()) {
+                taskAdapter.write(writer, task);
+            }
+            for (Subtask subtask : allSubtasks.values()) {
+                taskAdapter.write(writer, subtask);
+            }
+            writer.endArray();
+            writer.name(HISTORY_KEY).beginArray();
+            historyManager.forEach(task -> {
+                try {
+                    writer.value(task.getId());
+                } catch (IOException e) {
+                    throw new ManagerSaveException("Ошибка записи истории в снимок", e);
+                }
+            });
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка записи снимка задач", e);
+        }
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        snapshot.put(SNAPSHOT_KEY, document.toString());
+        return snapshot;
+    }
+
+    /**
+     * Чтение снимка за один проход: номер, задачи по полю type, затем история
+     */
+    private void readSnapshot(Reader document, LongMap<Task> index) throws IOException {
+        try (JsonReader reader = gson.newJsonReader(document)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case VERSION_KEY:
+                        version = reader.nextLong();
+                        break;
+                    case TASKS_KEY:
+                        readTasks(reader, index);
+                        break;
+                    case HISTORY_KEY:
+                        readHistory(reader, index);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    private void readTasks(String json, LongMap<Task> index) throws IOException {
+        try (JsonReader reader = gson.newJsonReader(new StringReader(json))) {
+            readTasks(reader, index);
+        }
+    }
+
+    private void readTasks(JsonReader reader, LongMap<Task> index) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Task task = taskAdapter.read(reader);
+            if (task != null) {
+                addTask(task, index);
+            }
+        }
+        reader.endArray();
+    }
+
+    private void readHistory(String json, LongMap<Task> index) throws IOException {
+        try (JsonReader reader = gson.newJsonReader(new StringReader(json))) {
+            readHistory(reader, index);
+        }
+    }
+
+    /**
+     * История по id из снимка: задача любого типа находится одним поиском в index
+     */
+    private void readHistory(JsonReader reader, LongMap<Task> index) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Task task = index.get(reader.nextLong());
+            if (task != null) {
+                historyManager.add(task);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static String journalKey(long version) {
+        return JOURNAL_KEY + version;
     }
 }
@@ -1,36 +1,59 @@
 package org.example.manager.http;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import org.example.manager.interfaces_and_utilities.HistoryManager;
 import org.example.manager.interfaces_and_utilities.Managers;
 import org.example.manager.interfaces_and_utilities.TaskManager;
+import org.example.server.ExecutorMode;
 import org.example.tasks.Epic;
 import org.example.tasks.Subtask;
 import org.example.tasks.Task;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class HttpTaskServer {
     public static final int PORT = 8079;
+    private static final int HISTORY_PAGE_SIZE = 256;
     private final HttpServer httpServer;
     private final Gson gson;
     private final TaskManager taskManager;
+    private final ExecutorService executor;
 
     public HttpTaskServer() throws IOException {
         this(Managers.getDefault());
     }
 
+    /**
+     * Сервер, обрабатывающий запросы по одному в потоке-диспетчере
+     */
     public HttpTaskServer(TaskManager taskManager) throws IOException {
+        this(taskManager, ExecutorMode.DISPATCHER, 1);
+    }
+
+    /**
+     * Сервер с заданным режимом обработки запросов. Режимы с несколькими потоками
+     * требуют менеджера, безопасного для одновременных вызовов.
+     *
+     * @param poolSize размер пула для режима BOUNDED_POOL
+     */
+    public HttpTaskServer(TaskManager taskManager, ExecutorMode executorMode, int poolSize) throws IOException {
         this.taskManager = taskManager;
         gson = Managers.getGson();
+        executor = executorMode.newExecutor(poolSize);
         httpServer = HttpServer.create();
-        httpServer.bind(new InetSocketAddress("localhost", PORT), 0);
+        httpServer.bind(new InetSocketAddress("localhost", PORT), ExecutorMode.ACCEPT_BACKLOG);
+        httpServer.setExecutor(executor);
         httpServer.createContext("/tasks", this::handler);
     }
 
@@ -83,10 +106,8 @@ public class HttpTaskServer {
         switch (httpExchange.getRequestMethod()) {
             case "GET":
                 if (query == null) {
-                    List<Task> listOfTask = taskManager.getListOfTask();
-                    response = gson.toJson(listOfTask);
                     System.out.println("Получили все задачи");
-                    sendText(httpExchange, response);
+                    sendTasks(httpExchange, taskManager.getListOfTask());
                     return;
                 }
                 idStr = query.substring(3);
@@ -153,10 +174,8 @@ public class HttpTaskServer {
         switch (httpExchange.getRequestMethod()) {
             case "GET":
                 if (query == null) {
-                    List<Task> listOfTask = taskManager.getListOfEpic();
-                    response = gson.toJson(listOfTask);
                     System.out.println("Получили все эпики");
-                    sendText(httpExchange, response);
+                    sendTasks(httpExchange, taskManager.getListOfEpic());
                     return;
                 }
                 idStr = query.substring(3);
@@ -222,10 +241,8 @@ public class HttpTaskServer {
         switch (httpExchange.getRequestMethod()) {
             case "GET":
                 if (query == null) {
-                    List<Task> listOfSubtask = taskManager.getListOfSubtask();
-                    response = gson.toJson(listOfSubtask);
                     System.out.println("Получили все подзадачи");
-                    sendText(httpExchange, response);
+                    sendTasks(httpExchange, taskManager.getListOfSubtask());
                     return;
                 }
                 idStr = query.substring(3);
@@ -293,10 +310,8 @@ public class HttpTaskServer {
         final String query = httpExchange.getRequestURI().getQuery();
         String idStr = query.substring(3);
         final long id = Long.parseLong(idStr);
-        List<Subtask> subtasksEpic = taskManager.getListSubtasksOfEpic(id);
-        final String response = gson.toJson(subtasksEpic);
         System.out.println("Получили список сабтаск эпика id=" + id);
-        sendText(httpExchange, response);
+        sendTasks(httpExchange, taskManager.getListSubtasksOfEpic(id));
     }
 
     /**
@@ -311,8 +326,43 @@ public class HttpTaskServer {
             }
             return;
         }
-        final String response = gson.toJson(taskManager.getHistoryManager().getHistory());
-        sendText(httpExchange, response);
+        final String query = httpExchange.getRequestURI().getQuery();
+        final int from;
+        final int limit;
+        try {
+            from = getIntParameter(query, "from", 0);
+            limit = getIntParameter(query, "limit", Integer.MAX_VALUE);
+        } catch (IllegalArgumentException e) {
+            sendBadRequest(httpExchange, e.getMessage());
+            return;
+        }
+        sendHistory(httpExchange, from, limit);
+    }
+
+    /**
+     * Запись истории в ответ страницами по HISTORY_PAGE_SIZE задач: полный список не собирается в памяти,
+     * а история не блокируется на время отправки. Просмотры во время отправки могут сдвинуть страницы.
+     */
+    private void sendHistory(HttpExchange h, int from, int limit) throws IOException {
+        final HistoryManager historyManager = taskManager.getHistoryManager();
+        try (JsonWriter writer = startJson(h)) {
+            writer.beginArray();
+            int position = from;
+            int remaining = limit;
+            while (remaining > 0) {
+                final int pageSize = Math.min(remaining, HISTORY_PAGE_SIZE);
+                List<Task> page = historyManager.getHistory(position, pageSize);
+                for (Task task : page) {
+                    writeTask(writer, task);
+                }
+                if (page.size() < pageSize) {
+                    break;
+                }
+                position += pageSize;
+                remaining -= pageSize;
+            }
+            writer.endArray();
+        }
     }
 
     private void handlePrioritizedListAllTasks(HttpExchange httpExchange) throws IOException {
@@ -323,8 +373,89 @@ public class HttpTaskServer {
             }
             return;
         }
-        final String response = gson.toJson(taskManager.getPrioritizedTasks());
-        sendText(httpExchange, response);
+        final String query = httpExchange.getRequestURI().getQuery();
+        final List<Task> prioritizedTasks;
+        if (query == null) {
+            prioritizedTasks = taskManager.getPrioritizedTasks();
+        } else {
+            final int from;
+            final int limit;
+            try {
+                from = getIntParameter(query, "from", 0);
+                limit = getIntParameter(query, "limit", Integer.MAX_VALUE);
+            } catch (IllegalArgumentException e) {
+                sendBadRequest(httpExchange, e.getMessage());
+                return;
+            }
+            prioritizedTasks = taskManager.getPrioritizedTasks(from, limit);
+        }
+        sendTasks(httpExchange, prioritizedTasks);
+    }
+
+    /**
+     * Запись списка задач в ответ по мере обхода списка: json не собирается в строку целиком,
+     * ответ уходит частями (chunked), и память на запрос не растет с числом задач.
+     */
+    private void sendTasks(HttpExchange h, Iterable<? extends Task> tasks) throws IOException {
+        try (JsonWriter writer = startJson(h)) {
+            writer.beginArray();
+            for (Task task : tasks) {
+                writeTask(writer, task);
+            }
+            writer.endArray();
+        }
+    }
+
+    /**
+     * Заголовки ответа без длины тела и JsonWriter поверх тела ответа. Закрытие writer закрывает ответ.
+     */
+    private JsonWriter startJson(HttpExchange h) throws IOException {
+        h.getResponseHeaders().add("Content-Type", "application/json");
+        h.sendResponseHeaders(200, 0);
+        return gson.newJsonWriter(new BufferedWriter(new OutputStreamWriter(h.getResponseBody(), UTF_8)));
+    }
+
+    private void writeTask(JsonWriter writer, Task task) throws IOException {
+        if (task == null) {
+            writer.nullValue();
+        } else {
+            gson.toJson(task, task.getClass(), writer);
+        }
+    }
+
+    /**
+     * Получение неотрицательного числового параметра запроса вида name=value
+     *
+     * @throws IllegalArgumentException если значение не число или отрицательное
+     */
+    private int getIntParameter(String query, String name, int defaultValue) {
+        if (query == null) {
+            return defaultValue;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                final String value = parameter.substring(name.length() + 1);
+                final int number;
+                try {
+                    number = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Параметр " + name + " должен быть числом: " + value);
+                }
+                if (number < 0) {
+                    throw new IllegalArgumentException("Параметр " + name + " должен быть неотрицательным: " + value);
+                }
+                return number;
+            }
+        }
+        return defaultValue;
+    }
+
+    private void sendBadRequest(HttpExchange h, String message) throws IOException {
+        System.out.println(message);
+        h.sendResponseHeaders(400, 0);
+        try (OutputStream os = h.getResponseBody()) {
+            os.write(message.getBytes(UTF_8));
+        }
     }
 
     public void start() {
@@ -335,6 +466,9 @@ public class HttpTaskServer {
 
     public void stop() {
         httpServer.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
         System.out.println("Сервер остановлен на порту " + PORT);
     }
 
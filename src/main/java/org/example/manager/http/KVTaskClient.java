@@ -1,69 +1,208 @@
 package org.example.manager.http;
 
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import org.example.manager.exceptions.ManagerSaveException;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Клиент KV-сервера. Один HttpClient на клиента: соединения переиспользуются между запросами.
+ */
 public class KVTaskClient {
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final Type BATCH_TYPE = new TypeToken<LinkedHashMap<String, String>>() {
+    }.getType();
+
     private final String url;
+    private final Duration requestTimeout;
+    private final HttpClient client;
     private final String apiToken;
+    private final Gson gson = new Gson();
 
     public KVTaskClient(String url) {
+        this(url, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * @param connectTimeout время на установку соединения
+     * @param requestTimeout время ожидания ответа на запрос
+     */
+    public KVTaskClient(String url, Duration connectTimeout, Duration requestTimeout) {
+        this(url, connectTimeout, requestTimeout, null);
+    }
+
+    /**
+     * Клиент для уже выданного токена: работает с ключами, сохраненными под этим токеном ранее
+     */
+    public KVTaskClient(String url, String apiToken) {
+        this(url, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, apiToken);
+    }
+
+    private KVTaskClient(String url, Duration connectTimeout, Duration requestTimeout, String apiToken) {
         this.url = url;
-        apiToken = register(url);
+        this.requestTimeout = requestTimeout;
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.apiToken = apiToken == null ? register(url) : apiToken;
+    }
+
+    /**
+     * Токен пространства ключей клиента на сервере
+     */
+    public String getApiToken() {
+        return apiToken;
     }
 
     public String register(String url) {
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url + "register"))
-                    .GET()
-                    .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                throw new ManagerSaveException("Не могу получить запрос, код статуса " + response.statusCode());
-            }
-            return response.body();
-        } catch (IOException | InterruptedException exception) {
-            throw new ManagerSaveException("Не могу получить запрос", exception);
-        }
+        HttpRequest request = newRequest(url + "register")
+                .GET()
+                .build();
+        return checkStatus(send(request, HttpResponse.BodyHandlers.ofString())).body();
     }
 
     public String load(String key) {
-        try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url + "load/" + key + "?API_TOKEN=" + apiToken))
-                    .GET()
-                    .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != 200) {
-                throw new ManagerSaveException("Не могу получить запрос, код статуса " + response.statusCode());
+        return checkStatus(send(loadRequest(key), HttpResponse.BodyHandlers.ofString())).body();
+    }
+
+    public void put(String key, String value) {
+        checkStatus(send(putRequest(key, value), HttpResponse.BodyHandlers.discarding()));
+    }
+
+    /**
+     * Получение значения; null, если ключа на сервере нет
+     */
+    public String loadIfPresent(String key) {
+        HttpResponse<String> response = send(loadRequest(key), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        return checkStatus(response).body();
+    }
+
+    /**
+     * Чтение значения потоком, без сборки строки; null, если ключа на сервере нет. Reader нужно закрыть.
+     */
+    public Reader openIfPresent(String key) {
+        HttpResponse<InputStream> response = send(loadRequest(key), HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            try {
+                response.body().close();
+            } catch (IOException exception) {
+                throw new ManagerSaveException("Не могу получить запрос", exception);
             }
-            return response.body();
-        } catch (IOException | InterruptedException exception) {
-            throw new ManagerSaveException("Не могу получить запрос", exception);
+            if (response.statusCode() == 404) {
+                return null;
+            }
+            checkStatus(response);
         }
+        return new InputStreamReader(response.body(), StandardCharsets.UTF_8);
     }
 
-    public void put(String key, String value) {
+    /**
+     * Дописывание значения в конец уже сохраненного
+     */
+    public void append(String key, String value) {
+        HttpRequest request = newRequest(url + "append/" + key + "?API_TOKEN=" + apiToken)
+                .POST(HttpRequest.BodyPublishers.ofString(value))
+                .build();
+        checkStatus(send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    public void delete(String key) {
+        HttpRequest request = newRequest(url + "delete/" + key + "?API_TOKEN=" + apiToken)
+                .DELETE()
+                .build();
+        checkStatus(send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    /**
+     * Сохранение нескольких значений одним запросом: сервер сохраняет либо все, либо ни одного
+     */
+    public void saveAll(Map<String, String> values) {
+        HttpRequest request = newRequest(url + "batch/save?API_TOKEN=" + apiToken)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(values)))
+                .build();
+        checkStatus(send(request, HttpResponse.BodyHandlers.discarding()));
+    }
+
+    /**
+     * Получение нескольких значений одним запросом. Отсутствующих на сервере ключей в ответе нет.
+     */
+    public Map<String, String> loadAll(Collection<String> keys) {
+        HttpRequest request = newRequest(url + "batch/load?API_TOKEN=" + apiToken)
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(keys)))
+                .build();
+        String body = checkStatus(send(request, HttpResponse.BodyHandlers.ofString())).body();
+        return gson.fromJson(body, BATCH_TYPE);
+    }
+
+    /**
+     * Асинхронное получение значения. При ошибке future завершается ManagerSaveException.
+     */
+    public CompletableFuture<String> loadAsync(String key) {
+        return client.sendAsync(loadRequest(key), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> checkStatus(response).body());
+    }
+
+    /**
+     * Асинхронное сохранение значения. При ошибке future завершается ManagerSaveException.
+     */
+    public CompletableFuture<Void> putAsync(String key, String value) {
+        return client.sendAsync(putRequest(key, value), HttpResponse.BodyHandlers.discarding())
+                .thenAccept(KVTaskClient::checkStatus);
+    }
+
+    private HttpRequest loadRequest(String key) {
+        return newRequest(url + "load/" + key + "?API_TOKEN=" + apiToken)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest putRequest(String key, String value) {
+        return newRequest(url + "save/" + key + "?API_TOKEN=" + apiToken)
+                .POST(HttpRequest.BodyPublishers.ofString(value))
+                .build();
+    }
+
+    private HttpRequest.Builder newRequest(String uri) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(uri))
+                .timeout(requestTimeout);
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
         try {
-            HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(url + "save/" + key + "?API_TOKEN=" + apiToken))
-                    .POST(HttpRequest.BodyPublishers.ofString(value))
-                    .build();
-            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
-            if (response.statusCode() != 200) {
-                throw new ManagerSaveException("Не могу получить запрос, код статуса " + response.statusCode());
-            }
-        } catch (IOException | InterruptedException exception) {
+            return client.send(request, bodyHandler);
+        } catch (IOException exception) {
+            throw new ManagerSaveException("Не могу получить запрос", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
             throw new ManagerSaveException("Не могу получить запрос", exception);
         }
     }
-}
\ No newline at end of file
+
+    private static <T> HttpResponse<T> checkStatus(HttpResponse<T> response) {
+        if (response.statusCode() != 200) {
+            throw new ManagerSaveException("Не могу получить запрос, код статуса " + response.statusCode());
+        }
+        return response;
+    }
+}
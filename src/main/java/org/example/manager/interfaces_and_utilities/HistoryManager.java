@@ -3,6 +3,7 @@ package org.example.manager.interfaces_and_utilities;
 import org.example.tasks.Task;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HistoryManager {
 
@@ -20,4 +21,15 @@ public interface HistoryManager {
      * возвращает список просмотренных задач.
      */
     List<Task> getHistory();
+
+    /**
+     * возвращает страницу истории: не больше limit задач, начиная с позиции from.
+     */
+    List<Task> getHistory(int from, int limit);
+
+    /**
+     * обходит историю по порядку без копирования в список. Действие выполняется под блокировкой
+     * истории и не должно ждать ввода-вывода.
+     */
+    void forEach(Consumer<? super Task> action);
 }
\ No newline at end of file
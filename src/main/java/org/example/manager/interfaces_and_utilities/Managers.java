@@ -3,8 +3,9 @@ package org.example.manager.interfaces_and_utilities;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import org.example.manager.adapter.LocalDateTimeAdapter;
+import org.example.manager.adapter.TaskAdapterFactory;
 import org.example.manager.http.HttpTaskManager;
-import org.example.manager.managers_types.InMemoryHistoryManager;
+import org.example.manager.managers_types.ConcurrentHistoryManager;
 import org.example.manager.managers_types.InMemoryTaskManager;
 import org.example.server.KVServer;
 
@@ -13,8 +14,20 @@ import java.time.LocalDateTime;
 
 public class Managers {
 
-    public static InMemoryHistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+    /**
+     * Размер истории по умолчанию: старые просмотры вытесняются, память и сохраняемая история не растут
+     */
+    public static final int DEFAULT_HISTORY_CAPACITY = 1_000;
+
+    public static HistoryManager getDefaultHistory() {
+        return getDefaultHistory(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new ConcurrentHistoryManager(capacity);
     }
 
     public static InMemoryTaskManager getDefaultTaskManager() {
@@ -34,6 +47,7 @@ public class Managers {
     public static Gson getGson() {
         return new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+                .registerTypeAdapterFactory(new TaskAdapterFactory())
                 .serializeNulls()
                 .create();
     }
@@ -56,6 +56,11 @@ public interface TaskManager {
      */
     List<Task> getPrioritizedTasks();
 
+    /**
+     * Получение страницы списка задач по приоритетам: не больше limit задач, начиная с позиции from.
+     */
+    List<Task> getPrioritizedTasks(int from, int limit);
+
     /**
      * Удаление всех задач.
      */
@@ -0,0 +1,229 @@
+package org.example.manager.managers_types;
+
+import org.example.tasks.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Двоичный снимок задач фиксированной разметки.
+ * <pre>
+ * заголовок: magic int, version int, число задач int, длина истории int, смещение пула строк long
+ * задача (RECORD_SIZE байт): id long, тип byte, статус byte, флаги byte, резерв byte,
+ *     смещение и длина имени int int, смещение и длина описания int int,
+ *     старт epochSecond long + nano int, продолжительность seconds long + nanos int,
+ *     окончание эпика epochSecond long + nano int, id эпика long
+ * история: id long
+ * пул строк: UTF-8 без разделителей
+ * </pre>
+ * Время хранится в UTC-секундах LocalDateTime без учета часового пояса.
+ */
+final class BinarySnapshot {
+
+    static final int MAGIC = 0x54534B31; // "TSK1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    private static final int RECORD_SIZE = 8 + 1 + 1 + 1 + 1 + 4 * 4 + (8 + 4) * 3 + 8;
+
+    private static final byte HAS_START = 1;
+    private static final byte HAS_DURATION = 1 << 1;
+    private static final byte HAS_END = 1 << 2;
+    private static final int NULL_STRING = -1;
+
+    private static final TypesTasks[] TYPES = TypesTasks.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Проверка, что файл начинается с заголовка двоичного снимка
+     */
+    static boolean isBinary(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            channel.read(magic, 0);
+            return magic.flip().remaining() == 4 && magic.getInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Запись снимка: сначала собирается пул строк, затем весь файл заполняется через MappedByteBuffer
+     */
+    static void write(File file, List<Collection<? extends Task>> groups, List<Task> history) throws IOException {
+        int count = 0;
+        for (Collection<? extends Task> group : groups) {
+            count += group.size();
+        }
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        long poolOffset = HEADER_SIZE + (long) RECORD_SIZE * count + 8L * history.size();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer records = ByteBuffer.allocate(RECORD_SIZE * count);
+            for (Collection<? extends Task> group : groups) {
+                for (Task task : group) {
+                    writeRecord(records, task, pool);
+                }
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, poolOffset + pool.size());
+            buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(count)
+                    .putInt(history.size())
+                    .putLong(poolOffset);
+            buffer.put(records.flip());
+            for (Task task : history) {
+                buffer.putLong(task.getId());
+            }
+            buffer.put(pool.toByteArray());
+            buffer.force();
+        }
+    }
+
+    /**
+     * Чтение снимка: задачи и id истории передаются потребителям в порядке записи
+     */
+    static void read(File file, Consumer<Task> tasks, LongConsumer history) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка: " + file.getAbsolutePath());
+            }
+            final int count = buffer.getInt();
+            final int historySize = buffer.getInt();
+            final int poolOffset = (int) buffer.getLong();
+
+            for (int i = 0; i < count; i++) {
+                tasks.accept(readRecord(buffer, poolOffset));
+            }
+            for (int i = 0; i < historySize; i++) {
+                history.accept(buffer.getLong());
+            }
+        }
+    }
+
+    private static void writeRecord(ByteBuffer buffer, Task task, ByteArrayOutputStream pool) {
+        byte flags = 0;
+        if (task.getStartTime() != null) {
+            flags |= HAS_START;
+        }
+        if (task.getDuration() != null) {
+            flags |= HAS_DURATION;
+        }
+        LocalDateTime endTime = null;
+        if (task instanceof Epic) {
+            endTime = task.getEndTime();
+            if (endTime != null) {
+                flags |= HAS_END;
+            }
+        }
+
+        buffer.putLong(task.getId())
+                .put((byte) task.getType().ordinal())
+                .put((byte) (task.getStatus() == null ? -1 : task.getStatus().ordinal()))
+                .put(flags)
+                .put((byte) 0);
+        putString(buffer, task.getNameTask(), pool);
+        putString(buffer, task.getDescription(), pool);
+        putDateTime(buffer, task.getStartTime());
+        if (task.getDuration() != null) {
+            buffer.putLong(task.getDuration().getSeconds()).putInt(task.getDuration().getNano());
+        } else {
+            buffer.putLong(0).putInt(0);
+        }
+        putDateTime(buffer, endTime);
+        buffer.putLong(task.getEpicId());
+    }
+
+    private static Task readRecord(MappedByteBuffer buffer, int poolOffset) {
+        final long id = buffer.getLong();
+        final TypesTasks type = TYPES[buffer.get()];
+        final byte status = buffer.get();
+        final byte flags = buffer.get();
+        buffer.get();
+        final String name = getString(buffer, poolOffset);
+        final String description = getString(buffer, poolOffset);
+        final LocalDateTime startTime = getDateTime(buffer, (flags & HAS_START) != 0);
+        final long durationSeconds = buffer.getLong();
+        final int durationNanos = buffer.getInt();
+        final LocalDateTime endTime = getDateTime(buffer, (flags & HAS_END) != 0);
+        final long epicId = buffer.getLong();
+
+        Task task;
+        switch (type) {
+            case EPIC:
+                task = new Epic(name, description);
+                ((Epic) task).setEndTime(endTime);
+                break;
+            case SUBTASK:
+                task = new Subtask(name, description, epicId);
+                break;
+            default:
+                task = new Task(name, description);
+                break;
+        }
+        task.setId(id);
+        task.setStatus(status < 0 ? null : STATUSES[status]);
+        task.setStartTime(startTime);
+        if ((flags & HAS_DURATION) != 0) {
+            task.setDuration(Duration.ofSeconds(durationSeconds, durationNanos));
+        }
+        return task;
+    }
+
+    private static void putString(ByteBuffer buffer, String value, ByteArrayOutputStream pool) {
+        if (value == null) {
+            buffer.putInt(0).putInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(pool.size()).putInt(bytes.length);
+        pool.writeBytes(bytes);
+    }
+
+    private static String getString(MappedByteBuffer buffer, int poolOffset) {
+        final int offset = buffer.getInt();
+        final int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        final int position = buffer.position();
+        buffer.position(poolOffset + offset);
+        buffer.get(bytes);
+        buffer.position(position);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putDateTime(ByteBuffer buffer, LocalDateTime dateTime) {
+        if (dateTime != null) {
+            buffer.putLong(dateTime.toEpochSecond(ZoneOffset.UTC)).putInt(dateTime.getNano());
+        } else {
+            buffer.putLong(0).putInt(0);
+        }
+    }
+
+    private static LocalDateTime getDateTime(MappedByteBuffer buffer, boolean isPresent) {
+        final long epochSecond = buffer.getLong();
+        final int nano = buffer.getInt();
+        return isPresent ? LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,203 @@
+package org.example.manager.managers_types;
+
+import org.example.manager.interfaces_and_utilities.HistoryManager;
+import org.example.tasks.Task;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * История просмотров для многопоточного сервера.
+ * add и remove не трогают общий список: операция получает номер из атомарного счетчика и дописывается
+ * в буфер полосы потока, потоки разных полос не мешают друг другу. Буферы сливаются в список истории
+ * пачкой, когда буфер полосы набрал DRAIN_THRESHOLD операций (если слив уже идет в другом потоке,
+ * операция просто остается в буфере), и перед каждым getHistory.
+ * Слив на короткое время забирает буферы всех полос сразу, поэтому в пачку попадают все операции
+ * с меньшими номерами, и после сортировки по номеру история совпадает с последовательным выполнением.
+ * Если задач в истории больше capacity, самая давно просмотренная удаляется.
+ */
+public class ConcurrentHistoryManager implements HistoryManager {
+    static final int DRAIN_THRESHOLD = 64;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    /**
+     * Просмотренные задачи по порядку последнего просмотра. Меняется только под drainLock.
+     */
+    private final PrimitiveHistoryManager history;
+
+    /**
+     * История без ограничения размера
+     */
+    public ConcurrentHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public ConcurrentHistoryManager(int capacity) {
+        history = new PrimitiveHistoryManager(capacity);
+        int stripesCount = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1) * 2 - 1);
+        stripes = new Stripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        stripeMask = stripesCount - 1;
+    }
+
+    /**
+     * Добавление задач в историю
+     */
+    @Override
+    public void add(Task task) {
+        record(task.getId(), task);
+    }
+
+    /**
+     * удаляет задачи из списка просмотренных.
+     */
+    @Override
+    public void remove(long id) {
+        record(id, null);
+    }
+
+    /**
+     * Получение истории
+     */
+    @Override
+    public List<Task> getHistory() {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Получение страницы истории
+     */
+    @Override
+    public List<Task> getHistory(int from, int limit) {
+        drainLock.lock();
+        try {
+            drain();
+            return history.getHistory(from, limit);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Обход истории без копирования. Пока идет обход, операции копятся в буферах полос.
+     */
+    @Override
+    public void forEach(Consumer<? super Task> action) {
+        drainLock.lock();
+        try {
+            drain();
+            history.forEach(action);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Запись операции в буфер полосы текущего потока
+     */
+    private void record(long id, Task task) {
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & stripeMask];
+        final int pending;
+        stripe.lock.lock();
+        try {
+            stripe.events.add(new Event(sequence.incrementAndGet(), id, task));
+            pending = stripe.events.size();
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (pending >= DRAIN_THRESHOLD && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Слив буферов всех полос в историю. Вызывается под drainLock.
+     */
+    private void drain() {
+        List<Event> batch = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+        try {
+            for (Stripe stripe : stripes) {
+                batch.addAll(stripe.events);
+                stripe.events.clear();
+            }
+        } finally {
+            for (Stripe stripe : stripes) {
+                stripe.lock.unlock();
+            }
+        }
+        batch.sort(Comparator.comparingLong(event -> event.sequence));
+        for (Event event : batch) {
+            if (event.task != null) {
+                history.add(event.task);
+            } else {
+                history.remove(event.id);
+            }
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConcurrentHistoryManager that = (ConcurrentHistoryManager) o;
+        return Objects.equals(getHistory(), that.getHistory());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getHistory());
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentHistoryManager{" +
+                "history=" + getHistory() +
+                '}';
+    }
+
+    /**
+     * Буфер операций полосы
+     */
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final List<Event> events = new ArrayList<>();
+    }
+
+    /**
+     * Операция с историей: task == null - удаление
+     */
+    private static final class Event {
+        private final long sequence;
+        private final long id;
+        private final Task task;
+
+        private Event(long sequence, long id, Task task) {
+            this.sequence = sequence;
+            this.id = id;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package org.example.manager.managers_types;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Потоковое чтение CSV за один проход по буферу символов.
+ * Поле в кавычках может содержать запятые, переводы строк и удвоенные кавычки.
+ * Текущее поле хранится в одном переиспользуемом буфере, массивы строк не создаются.
+ */
+final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END_OF_FILE = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean endOfLine = true;
+    private boolean lineTerminated = true;
+    private long lines;
+
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Переход к следующей строке, непрочитанные поля текущей строки пропускаются.
+     * false - строк больше нет.
+     */
+    boolean nextLine() throws IOException {
+        while (!endOfLine) {
+            nextField();
+        }
+        if (peek() == END_OF_FILE) {
+            return false;
+        }
+        endOfLine = false;
+        lines++;
+        return true;
+    }
+
+    /**
+     * Пропуск оставшихся полей текущей строки. false - строка оборвана концом файла без перевода строки.
+     */
+    boolean finishLine() throws IOException {
+        while (!endOfLine) {
+            nextField();
+        }
+        return lineTerminated;
+    }
+
+    /**
+     * Текущая строка пустая
+     */
+    boolean isLineEmpty() throws IOException {
+        int next = peek();
+        return !endOfLine && (next == '\n' || next == '\r' || next == END_OF_FILE);
+    }
+
+    /**
+     * В текущей строке остались поля
+     */
+    boolean hasNextField() {
+        return !endOfLine;
+    }
+
+    /**
+     * Чтение следующего поля. Возвращаемый буфер действителен до следующего вызова.
+     */
+    CharSequence nextField() throws IOException {
+        field.setLength(0);
+        int next = read();
+        if (next == '"') {
+            readQuoted();
+            next = read();
+        }
+        while (next != ',' && next != '\n' && next != '\r' && next != END_OF_FILE) {
+            field.append((char) next);
+            next = read();
+        }
+        if (next != ',') {
+            endOfLine = true;
+            lineTerminated = next != END_OF_FILE;
+            if (next == '\r' && peek() == '\n') {
+                read();
+            }
+        }
+        return field;
+    }
+
+    String nextString() throws IOException {
+        return nextField().toString();
+    }
+
+    long nextLong() throws IOException {
+        return parseLong(nextField());
+    }
+
+    /**
+     * Разбор десятичного числа без создания строки
+     */
+    static long parseLong(CharSequence value) {
+        if (value.length() == 0) {
+            throw new NumberFormatException("Пустое число");
+        }
+        boolean isNegative = value.charAt(0) == '-';
+        long result = 0;
+        for (int i = isNegative ? 1 : 0; i < value.length(); i++) {
+            char digit = value.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new NumberFormatException("Не число: " + value);
+            }
+            result = result * 10 + (digit - '0');
+        }
+        return isNegative ? -result : result;
+    }
+
+    /**
+     * Поиск константы перечисления по имени без создания строки
+     */
+    <E extends Enum<E>> E nextEnum(E[] values) throws IOException {
+        CharSequence value = nextField();
+        for (E constant : values) {
+            if (constant.name().contentEquals(value)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное значение в строке " + lines + ": " + value);
+    }
+
+    /**
+     * Количество прочитанных строк
+     */
+    long getLines() {
+        return lines;
+    }
+
+    /**
+     * Экранирование поля для записи: кавычки ставятся, только если без них поле не прочитать
+     */
+    static void appendField(StringBuilder sb, Object value) {
+        String text = String.valueOf(value);
+        boolean needsQuotes = false;
+        for (int i = 0; i < text.length() && !needsQuotes; i++) {
+            char c = text.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            sb.append(text);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readQuoted() throws IOException {
+        while (true) {
+            int next = read();
+            if (next == END_OF_FILE) {
+                throw new IOException("Незакрытая кавычка в строке " + lines);
+            }
+            if (next == '"') {
+                if (peek() != '"') {
+                    return;
+                }
+                read();
+            }
+            field.append((char) next);
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_FILE;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return END_OF_FILE;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
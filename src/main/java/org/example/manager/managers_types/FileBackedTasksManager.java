@@ -5,59 +5,429 @@ import org.example.manager.interfaces_and_utilities.HistoryManager;
 import org.example.tasks.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import static java.lang.Integer.valueOf;
+public class FileBackedTasksManager extends InMemoryTaskManager implements AutoCloseable {
 
-public class FileBackedTasksManager extends InMemoryTaskManager {
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+    private static final String HEADER_OF_FILE = "id,type,name,status,description,epic, startTime, duration, endTime\n";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String SNAPSHOT_TEMP_SUFFIX = ".tmp";
 
     private final File FILE;
-    private static final String HEADER_OF_FILE = "id,type,name,status,description,epic, startTime, duration, endTime\n";
+    /**
+     * Журнал операций: каждая операция дописывается в конец файла, не переписывая снимок.
+     */
+    private final File JOURNAL;
+    private final int compactionThreshold;
+    private int journalRecordsSinceCompaction;
+    private boolean journalStarted;
+    private boolean replaying;
+
+    /**
+     * Групповая запись: записи журнала копятся в памяти и сбрасываются на диск пачкой.
+     * Все обращения к буферу, каналу и счетчику записей журнала - под journalLock: просмотры пишут
+     * в журнал без монитора менеджера. Изменения берут сначала монитор менеджера, затем journalLock.
+     */
+    private final Object journalLock = new Object();
+    private final StringBuilder pendingRecords = new StringBuilder();
+    private int pendingRecordsCount;
+    private FileChannel journalChannel;
+    private PersistenceMode persistenceMode = PersistenceMode.IMMEDIATE;
+    private SnapshotFormat snapshotFormat = SnapshotFormat.CSV;
+    private int maxBatchOperations = 1;
+    private long maxBatchDelayMillis;
+    private ScheduledExecutorService flushScheduler;
+    private boolean flushScheduled;
+    /**
+     * Ошибка отложенного сброса журнала. Передается следующей записи в журнал, flush или close.
+     */
+    private ManagerSaveException flushError;
 
     public FileBackedTasksManager(File file) {
+        this(file, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param compactionThreshold количество записей в журнале, после которого журнал сворачивается в снимок
+     */
+    public FileBackedTasksManager(File file, int compactionThreshold) {
         this.FILE = file;
+        this.JOURNAL = file == null ? null : new File(file.getPath() + JOURNAL_SUFFIX);
+        this.compactionThreshold = compactionThreshold;
     }
 
     /**
-     * Сохранение задач по строкам в файл
+     * Режим записи журнала
+     */
+    public enum PersistenceMode {
+        /**
+         * Каждая операция сразу пишется в журнал.
+         */
+        IMMEDIATE,
+        /**
+         * Операции копятся и пишутся в журнал с FileChannel.force не чаще, чем раз в maxBatchDelayMillis
+         * или по набору maxBatchOperations записей. При сбое теряются только несброшенные записи.
+         */
+        GROUP_COMMIT
+    }
+
+    /**
+     * Формат снимка. При загрузке формат определяется по заголовку файла.
+     */
+    public enum SnapshotFormat {
+        CSV,
+        /**
+         * Двоичная запись фиксированной длины и пул строк, читается через MappedByteBuffer.
+         */
+        BINARY
+    }
+
+    /**
+     * Операции журнала
+     */
+    private enum JournalOperation {
+        PUT,
+        DEL,
+        CLEAR,
+        VIEW,
+        FORGET
+    }
+
+    /**
+     * Установка режима записи журнала
+     */
+    public void setPersistenceMode(PersistenceMode persistenceMode, int maxBatchOperations, long maxBatchDelayMillis) {
+        flush();
+        this.persistenceMode = persistenceMode;
+        this.maxBatchOperations = Math.max(maxBatchOperations, 1);
+        this.maxBatchDelayMillis = Math.max(maxBatchDelayMillis, 0);
+    }
+
+    /**
+     * Установка формата снимка для следующих сверток журнала
+     */
+    public void setSnapshotFormat(SnapshotFormat snapshotFormat) {
+        this.snapshotFormat = snapshotFormat;
+    }
+
+    /**
+     * Сохранение снимка в файл
      */
     protected void save() {
-        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(FILE))) {
+        writeSnapshot(FILE, snapshotFormat);
+    }
+
+    /**
+     * Конвертация снимка с журналом из одного файла в снимок заданного формата в другом файле
+     */
+    public static void convert(File source, File target, SnapshotFormat targetFormat) {
+        try (FileBackedTasksManager manager = loadFromFile(source)) {
+            manager.writeSnapshot(target, targetFormat);
+        }
+    }
+
+    /**
+     * Запись снимка во временный файл рядом с file и замена file одним переименованием:
+     * при сбое во время записи на диске остается прежний снимок.
+     */
+    private void writeSnapshot(File file, SnapshotFormat format) {
+        final File temp = new File(file.getPath() + SNAPSHOT_TEMP_SUFFIX);
+        try {
+            if (format == SnapshotFormat.BINARY) {
+                BinarySnapshot.write(temp,
+                        List.of(allTasks.values(), allEpicTasks.values(), allSubtasks.values()),
+                        historyManager.getHistory());
+            } else {
+                writeCsvSnapshot(temp);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            temp.delete();
+            throw new ManagerSaveException("Ошибка в файле: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Сохранение задач по строкам в файл
+     */
+    private void writeCsvSnapshot(File file) throws IOException {
+        try (FileOutputStream fileOutputStream = new FileOutputStream(file);
+             BufferedWriter bufferedWriter = new BufferedWriter(
+                     new OutputStreamWriter(fileOutputStream, StandardCharsets.UTF_8))) {
             bufferedWriter.append(HEADER_OF_FILE);
 
-            for (Map.Entry<Long, Task> idTaskEntry : allTasks.entrySet()) {
-                bufferedWriter.append(toString(idTaskEntry.getValue()));
+            for (Task task : allTasks.values()) {
+                bufferedWriter.append(toString(task));
                 bufferedWriter.newLine();
             }
 
-            for (Map.Entry<Long, Epic> idEpicEntry : allEpicTasks.entrySet()) {
-                bufferedWriter.append(toString(idEpicEntry.getValue()));
+            for (Epic epic : allEpicTasks.values()) {
+                bufferedWriter.append(toString(epic));
                 bufferedWriter.newLine();
             }
 
-            for (Map.Entry<Long, Subtask> idSubtaskEntry : allSubtasks.entrySet()) {
-                bufferedWriter.append(toString(idSubtaskEntry.getValue()));
+            for (Subtask subtask : allSubtasks.values()) {
+                bufferedWriter.append(toString(subtask));
                 bufferedWriter.newLine();
             }
 
             bufferedWriter.newLine();
             bufferedWriter.append(historyToString(historyManager));
+            bufferedWriter.flush();
+            fileOutputStream.getChannel().force(true);
+        }
+    }
+
+    /**
+     * Запись операций в журнал. Первая запись нового менеджера и каждые compactionThreshold записей
+     * сворачивают журнал в снимок.
+     */
+    protected void writeToJournal(String... records) {
+        if (replaying) {
+            return;
+        }
+        if (!journalStarted) {
+            compact();
+            return;
+        }
+        final boolean compactionDue;
+        synchronized (journalLock) {
+            appendToJournal(records);
+            compactionDue = journalRecordsSinceCompaction >= compactionThreshold;
+        }
+        if (compactionDue) {
+            compact();
+        }
+    }
+
+    /**
+     * Добавление записей в буфер журнала и сброс по режиму записи. Вызывается под journalLock.
+     */
+    private void appendToJournal(String... records) {
+        for (String record : records) {
+            pendingRecords.append(record).append(System.lineSeparator());
+        }
+        pendingRecordsCount += records.length;
+        journalRecordsSinceCompaction += records.length;
+        throwFlushError();
+        if (persistenceMode == PersistenceMode.IMMEDIATE || pendingRecordsCount >= maxBatchOperations) {
+            flushPendingRecords(persistenceMode == PersistenceMode.GROUP_COMMIT);
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            getFlushScheduler().schedule(this::scheduledFlush, maxBatchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Просмотр задачи. История и запись VIEW меняются вместе под journalLock, без монитора менеджера:
+     * чтения не ждут изменений, а порядок просмотров в журнале совпадает с историей. Изменения держат
+     * journalLock от изменения в памяти до записи в журнал, поэтому VIEW не опережает PUT задачи,
+     * а удаленная за это время задача в историю не попадает.
+     * Просмотр не сворачивает журнал, свертку запускает следующее изменение.
+     */
+    protected void recordView(Task task) {
+        synchronized (journalLock) {
+            if (!isStored(task)) {
+                return;
+            }
+            historyManager.add(task);
+            writeViewToJournal(record(JournalOperation.VIEW, task.getId()));
+        }
+    }
+
+    private boolean isStored(Task task) {
+        switch (task.getType()) {
+            case EPIC:
+                return allEpicTasks.containsKey(task.getId());
+            case SUBTASK:
+                return allSubtasks.containsKey(task.getId());
+            default:
+                return allTasks.containsKey(task.getId());
+        }
+    }
+
+    /**
+     * Запись просмотра в журнал. Вызывается под journalLock. До первой свертки журнал не ведется,
+     * просмотр попадет в снимок.
+     */
+    protected void writeViewToJournal(String record) {
+        if (!replaying && journalStarted) {
+            appendToJournal(record);
+        }
+    }
+
+    /**
+     * Сброс накопленных записей журнала на диск
+     */
+    public void flush() {
+        synchronized (journalLock) {
+            throwFlushError();
+            flushPendingRecords(true);
+        }
+    }
+
+    /**
+     * Отложенный сброс в потоке планировщика. Ошибка не выбрасывается в планировщик, где ее никто не увидит,
+     * а запоминается до следующего обращения к журналу. Несброшенные записи остаются в буфере.
+     */
+    private void scheduledFlush() {
+        synchronized (journalLock) {
+            try {
+                flushPendingRecords(true);
+            } catch (ManagerSaveException e) {
+                flushError = e;
+            }
+        }
+    }
+
+    /**
+     * Передача ошибки отложенного сброса вызывающему. Вызывается под journalLock.
+     */
+    private void throwFlushError() {
+        if (flushError != null) {
+            final ManagerSaveException error = flushError;
+            flushError = null;
+            throw new ManagerSaveException("Записи журнала не сброшены на диск: " + JOURNAL.getAbsolutePath(), error);
+        }
+    }
+
+    /**
+     * Свертка журнала: сохранение полного снимка в файл и очистка журнала.
+     * Журнал очищается только после замены снимка: если запись снимка не удалась, остаются прежний снимок
+     * и журнал. Несброшенные записи уже учтены в снимке и отбрасываются.
+     */
+    public void compact() {
+        synchronized (journalLock) {
+            save();
+            pendingRecords.setLength(0);
+            pendingRecordsCount = 0;
+            try {
+                getJournalChannel().truncate(0);
+                journalChannel.force(true);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Ошибка в журнале: " + JOURNAL.getAbsolutePath(), e);
+            }
+            journalRecordsSinceCompaction = 0;
+            journalStarted = true;
+        }
+    }
+
+    /**
+     * Сброс записей журнала и освобождение файла
+     */
+    @Override
+    public void close() {
+        synchronized (journalLock) {
+            try {
+                throwFlushError();
+                flushPendingRecords(true);
+            } finally {
+                if (flushScheduler != null) {
+                    flushScheduler.shutdownNow();
+                    flushScheduler = null;
+                }
+                if (journalChannel != null) {
+                    try {
+                        journalChannel.close();
+                    } catch (IOException e) {
+                        throw new ManagerSaveException("Ошибка в журнале: " + JOURNAL.getAbsolutePath(), e);
+                    }
+                    journalChannel = null;
+                }
+            }
+        }
+    }
 
+    private void flushPendingRecords(boolean force) {
+        flushScheduled = false;
+        if (pendingRecordsCount == 0) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pendingRecords));
+            FileChannel channel = getJournalChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (force) {
+                channel.force(false);
+            }
         } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка в файле: " + FILE.getAbsolutePath());
+            throw new ManagerSaveException("Ошибка в журнале: " + JOURNAL.getAbsolutePath(), e);
+        }
+        pendingRecords.setLength(0);
+        pendingRecordsCount = 0;
+    }
+
+    private FileChannel getJournalChannel() throws IOException {
+        if (journalChannel == null) {
+            journalChannel = FileChannel.open(JOURNAL.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
         }
+        return journalChannel;
+    }
+
+    private ScheduledExecutorService getFlushScheduler() {
+        if (flushScheduler == null) {
+            flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flush-" + JOURNAL.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return flushScheduler;
     }
 
     /**
-     * Получение строки из задачи
+     * Идет загрузка: операции не пишутся в журнал
+     */
+    protected boolean isReplaying() {
+        return replaying;
+    }
+
+    private static String record(JournalOperation operation, Object value) {
+        return operation + "," + value;
+    }
+
+    private String put(Task task) {
+        return record(JournalOperation.PUT, toString(task));
+    }
+
+    /**
+     * Получение строки из задачи. Имя и описание берутся в кавычки, если содержат запятые,
+     * кавычки или переводы строк; в остальном строка совпадает с task.toString().
      */
     public String toString(Task task) {
-        return task.toString();
+        StringBuilder sb = new StringBuilder();
+        sb.append(task.getId()).append(',')
+                .append(task.getType()).append(',');
+        CsvReader.appendField(sb, task.getNameTask());
+        sb.append(',').append(task.getStatus()).append(',');
+        CsvReader.appendField(sb, task.getDescription());
+        sb.append(',');
+        if (task.getType() == TypesTasks.SUBTASK) {
+            sb.append(task.getEpicId()).append(',');
+        }
+        final LocalDateTime endTime = task.getType() == TypesTasks.EPIC || task.getStartTime() != null
+                ? task.getEndTime() : null;
+        return sb.append(task.getStartTime()).append(',')
+                .append(task.getDuration()).append(',')
+                .append(endTime)
+                .toString();
     }
 
     /**
@@ -65,9 +435,7 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      */
     private static String historyToString(HistoryManager historyManager) {
         StringBuilder sb = new StringBuilder();
-        for (Task task : historyManager.getHistory()) {
-            sb.append(task.getId()).append(",");
-        }
+        historyManager.forEach(task -> sb.append(task.getId()).append(","));
         return sb.toString();
     }
 
@@ -81,246 +449,436 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
     }
 
     /**
-     * Загрузка задач построчно
+     * Загрузка задач построчно: снимок, затем операции из журнала. Если повтор журнала остановился
+     * на оборванной или испорченной записи, состояние сразу сворачивается в снимок: иначе новые записи
+     * дописывались бы к недописанной строке и терялись при следующей загрузке.
      */
     private void load() {
-        long maxId = 0L;
-        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(FILE, StandardCharsets.UTF_8))) {
-            String line = bufferedReader.readLine();
-            while (line != null) {
-                line = bufferedReader.readLine();
-                if (line.isEmpty()) {
-                    break;
+        JournalReplay replay = JournalReplay.EMPTY;
+        replaying = true;
+        try {
+            if (FILE.exists() && BinarySnapshot.isBinary(FILE)) {
+                snapshotFormat = SnapshotFormat.BINARY;
+                BinarySnapshot.read(FILE, this::putTask, this::restoreHistory);
+            } else if (FILE.exists()) {
+                loadSnapshot();
+            }
+            if (JOURNAL.exists()) {
+                replay = replayJournal(new FileReader(JOURNAL, StandardCharsets.UTF_8));
+                journalRecordsSinceCompaction += replay.getRecords();
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Ошибка в файле: " + FILE.getAbsolutePath(), e);
+        } finally {
+            replaying = false;
+        }
+        journalStarted = true;
+        if (!replay.isComplete()) {
+            compact();
+        }
+    }
+
+    private void loadSnapshot() throws IOException {
+        try (CsvReader csvReader = new CsvReader(new FileReader(FILE, StandardCharsets.UTF_8))) {
+            csvReader.nextLine();
+            while (csvReader.nextLine() && !csvReader.isLineEmpty()) {
+                putTask(readTask(csvReader));
+            }
+
+            if (csvReader.nextLine()) {
+                while (csvReader.hasNextField()) {
+                    CharSequence historyId = csvReader.nextField();
+                    if (historyId.length() > 0) {
+                        restoreHistory(CsvReader.parseLong(historyId));
+                    }
                 }
+            }
+        }
+    }
+
+    /**
+     * Восстановление просмотра задачи любого типа
+     */
+    private void restoreHistory(long numberId) {
+        getTaskByID(numberId);
+        getEpicByID(numberId);
+        getSubtaskByID(numberId);
+    }
 
-                long numberId = getTaskFromString(line).getId();
-                switch (getTaskFromString(line).getType()) {
-                    case TASK:
-                        allTasks.put(numberId, getTaskFromString(line));
-                        prioritizedMapOfTasks.put(getTaskFromString(line).getStartTime(), getTaskFromString(line));
-                        break;
-                    case EPIC:
-                        allEpicTasks.put(numberId, (Epic) getTaskFromString(line));
-                        break;
-                    case SUBTASK:
-                        allSubtasks.put(numberId, (Subtask) getTaskFromString(line));
-                        prioritizedMapOfTasks.put(getTaskFromString(line).getStartTime(),
-                                getTaskFromString(line));
-                        if (allEpicTasks.containsKey(((Subtask) getTaskFromString(line)).getEpicId())) {
-                            Epic epic = allEpicTasks.get(((Subtask) getTaskFromString(line)).getEpicId());
-                            epic.getIdsOfSubtasksEpic().add(numberId);
-                        }
-                        break;
+    /**
+     * Повтор операций из журнала поверх загруженных задач. Запись применяется, только если она прочитана
+     * целиком вместе с переводом строки. Повтор останавливается на первой оборванной или испорченной записи.
+     */
+    protected JournalReplay replayJournal(Reader journal) throws IOException {
+        final boolean wasReplaying = replaying;
+        replaying = true;
+        int records = 0;
+        try (CsvReader csvReader = new CsvReader(journal)) {
+            while (csvReader.nextLine()) {
+                if (csvReader.isLineEmpty()) {
+                    continue;
                 }
-                if (maxId < numberId) {
-                    maxId = numberId;
+                final Runnable operation;
+                try {
+                    operation = readRecord(csvReader);
+                    if (!csvReader.finishLine()) {
+                        return new JournalReplay(records, false);
+                    }
+                } catch (RuntimeException | IOException e) {
+                    return new JournalReplay(records, false);
                 }
+                operation.run();
+                records++;
             }
+        } finally {
+            replaying = wasReplaying;
+        }
+        return new JournalReplay(records, true);
+    }
 
-            line = bufferedReader.readLine();
-            for (Integer historyIdTasks : getHistoryFromString(line)) {
-                getTaskByID(historyIdTasks);
-                getEpicByID(historyIdTasks);
-                getSubtaskByID(historyIdTasks);
-            }
+    /**
+     * Чтение записи журнала. Операция возвращается без выполнения.
+     */
+    private Runnable readRecord(CsvReader csvReader) throws IOException {
+        switch (csvReader.nextEnum(JournalOperation.values())) {
+            case PUT:
+                final Task task = readTask(csvReader);
+                return () -> putTask(task);
+            case DEL:
+                final long id = csvReader.nextLong();
+                return () -> replayDelete(id);
+            case CLEAR:
+                final TypesTasks type = csvReader.nextEnum(TypesTasks.values());
+                return () -> replayClear(type);
+            case VIEW:
+                final long viewedId = csvReader.nextLong();
+                return () -> restoreHistory(viewedId);
+            case FORGET:
+                final long forgottenId = csvReader.nextLong();
+                return () -> historyManager.remove(forgottenId);
+            default:
+                throw new IllegalArgumentException("Неизвестная операция в строке " + csvReader.getLines());
+        }
+    }
 
-        } catch (IOException e) {
-            throw new ManagerSaveException("Ошибка в файле: " + FILE.getAbsolutePath());
+    private void replayDelete(long id) {
+        advanceCreatedID(id);
+        if (allTasks.containsKey(id)) {
+            deleteTaskForID(id);
+        } else if (allEpicTasks.containsKey(id)) {
+            deleteEpicForID(id);
+        } else {
+            deleteSubtaskForID(id);
+        }
+    }
+
+    private void replayClear(TypesTasks type) {
+        switch (type) {
+            case TASK:
+                deleteListOfTask();
+                break;
+            case EPIC:
+                deleteListOfEpic();
+                break;
+            case SUBTASK:
+                deleteListOfSubtask();
+                break;
+        }
+    }
+
+    /**
+     * Итог повтора журнала: число примененных записей и прочитан ли журнал до конца
+     */
+    protected static final class JournalReplay {
+        private static final JournalReplay EMPTY = new JournalReplay(0, true);
+
+        private final int records;
+        private final boolean complete;
+
+        private JournalReplay(int records, boolean complete) {
+            this.records = records;
+            this.complete = complete;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * false - повтор остановлен на оборванной или испорченной записи, журнал нужно свернуть
+         */
+        public boolean isComplete() {
+            return complete;
         }
-        createdID = maxId;
     }
 
     /**
-     * Получение задачи из строки
+     * Добавление или замена задачи, прочитанной из файла. Поля эпика берутся из файла как есть.
      */
-    private Task getTaskFromString(String value) {
-        final String[] tasksFromString = value.split(",");
-        Task unifiedTask = null;
-        switch (TypesTasks.valueOf(tasksFromString[1])) {
+    private void putTask(Task task) {
+        final long numberId = task.getId();
+        switch (task.getType()) {
             case TASK:
-                unifiedTask = new Task(tasksFromString[2], tasksFromString[4]);
-                unifiedTask.setStatus(Status.valueOf(tasksFromString[3]));
-                unifiedTask.setId(Long.parseLong(tasksFromString[0]));
-                if (!tasksFromString[5].equals("null")) {
-                    unifiedTask.setStartTime(LocalDateTime.parse(tasksFromString[5]));
-                    unifiedTask.setDuration(Duration.parse(tasksFromString[6]));
-                    unifiedTask.getEndTime();
-                }
+                prioritizedTasks.remove(numberId);
+                allTasks.put(numberId, task);
+                addTasksInPrioritizedList(task);
                 break;
             case EPIC:
-                unifiedTask = new Epic(tasksFromString[2], tasksFromString[4], this);
-                unifiedTask.setStatus(Status.valueOf(tasksFromString[3]));
-                unifiedTask.setId(Long.parseLong(tasksFromString[0]));
-                if (!tasksFromString[5].equals("null")) {
-                    unifiedTask.setStartTime(LocalDateTime.parse(tasksFromString[5]));
-                    unifiedTask.setDuration(Duration.parse(tasksFromString[6]));
-                    this.setEndTimeEpic((Epic) unifiedTask);
+                Epic savedEpic = allEpicTasks.get(numberId);
+                if (savedEpic == null) {
+                    allEpicTasks.put(numberId, (Epic) task);
+                } else {
+                    savedEpic.setNameTask(task.getNameTask());
+                    savedEpic.setDescription(task.getDescription());
+                    savedEpic.setStatus(task.getStatus());
+                    savedEpic.setStartTime(task.getStartTime());
+                    savedEpic.setDuration(task.getDuration());
+                    savedEpic.setEndTime(task.getEndTime());
                 }
                 break;
             case SUBTASK:
-                unifiedTask = new Subtask(tasksFromString[2], tasksFromString[4], Long.parseLong(tasksFromString[5]));
-                unifiedTask.setStatus(Status.valueOf(tasksFromString[3]));
-                unifiedTask.setId(Long.parseLong(tasksFromString[0]));
-                if (!tasksFromString[6].equals("null")) {
-                    unifiedTask.setStartTime(LocalDateTime.parse(tasksFromString[6]));
-                    unifiedTask.setDuration(Duration.parse(tasksFromString[7]));
-                    unifiedTask.getEndTime();
+                Subtask subtask = (Subtask) task;
+                prioritizedTasks.remove(numberId);
+                Subtask oldSubtask = allSubtasks.put(numberId, subtask);
+                addTasksInPrioritizedList(subtask);
+                Epic epic = allEpicTasks.get(subtask.getEpicId());
+                if (epic != null) {
+                    if (oldSubtask == null) {
+                        epic.addSubtask(subtask);
+                    } else {
+                        epic.excludeFromRollup(oldSubtask);
+                        epic.includeInRollup(subtask);
+                    }
                 }
                 break;
         }
-        return unifiedTask;
+        advanceCreatedID(numberId);
     }
 
     /**
-     * Получение истории из строки
+     * Чтение задачи из текущей строки CSV
      */
-    static List<Integer> getHistoryFromString(String value) {
-        final String[] ids = value.split(",");
-        List<Integer> listIds = new ArrayList<>();
-        for (String id : ids) {
-            listIds.add(valueOf(id));
+    private Task readTask(CsvReader csvReader) throws IOException {
+        final long id = csvReader.nextLong();
+        final TypesTasks type = csvReader.nextEnum(TypesTasks.values());
+        final String name = csvReader.nextString();
+        final Status status = csvReader.nextEnum(Status.values());
+        final String description = csvReader.nextString();
+        Task unifiedTask;
+        switch (type) {
+            case EPIC:
+                unifiedTask = new Epic(name, description, this);
+                break;
+            case SUBTASK:
+                unifiedTask = new Subtask(name, description, csvReader.nextLong());
+                break;
+            default:
+                unifiedTask = new Task(name, description);
+                break;
+        }
+        unifiedTask.setId(id);
+        unifiedTask.setStatus(status);
+
+        CharSequence field = csvReader.nextField();
+        if (!"null".contentEquals(field)) {
+            unifiedTask.setStartTime(LocalDateTime.parse(field));
+        }
+        field = csvReader.nextField();
+        if (!"null".contentEquals(field)) {
+            unifiedTask.setDuration(Duration.parse(field));
         }
-        return listIds;
+        if (type == TypesTasks.EPIC) {
+            field = csvReader.nextField();
+            if (!"null".contentEquals(field)) {
+                ((Epic) unifiedTask).setEndTime(LocalDateTime.parse(field));
+            }
+        }
+        return unifiedTask;
     }
 
     /**
      * Удаление всех задач.
      */
     @Override
-    public void deleteListOfTask() {
-        super.deleteListOfTask();
-        save();
+    public synchronized void deleteListOfTask() {
+        synchronized (journalLock) {
+            super.deleteListOfTask();
+            writeToJournal(record(JournalOperation.CLEAR, TypesTasks.TASK));
+        }
     }
 
     /**
      * Удаление всех эпиков.
      */
     @Override
-    public void deleteListOfEpic() {
-        super.deleteListOfEpic();
-        save();
+    public synchronized void deleteListOfEpic() {
+        synchronized (journalLock) {
+            super.deleteListOfEpic();
+            writeToJournal(record(JournalOperation.CLEAR, TypesTasks.EPIC));
+        }
     }
 
     /**
      * Удаление всех подзадач.
      */
     @Override
-    public void deleteListOfSubtask() {
-        super.deleteListOfSubtask();
-        save();
+    public synchronized void deleteListOfSubtask() {
+        synchronized (journalLock) {
+            super.deleteListOfSubtask();
+            writeToJournal(record(JournalOperation.CLEAR, TypesTasks.SUBTASK));
+        }
     }
 
     /**
      * Обновление задачи.
      */
     @Override
-    public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+    public synchronized void updateTask(Task task) {
+        synchronized (journalLock) {
+            super.updateTask(task);
+            writeToJournal(put(allTasks.get(task.getId())));
+        }
     }
 
     /**
      * Обновление эпика.
      */
     @Override
-    public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+    public synchronized void updateEpic(Epic epic) {
+        synchronized (journalLock) {
+            super.updateEpic(epic);
+            writeToJournal(put(allEpicTasks.get(epic.getId())));
+        }
     }
 
     /**
      * Обновление подзадачи.
      */
     @Override
-    public void updateSubtask(Subtask subtask) {
-        super.updateSubtask(subtask);
-        save();
+    public synchronized void updateSubtask(Subtask subtask) {
+        synchronized (journalLock) {
+            super.updateSubtask(subtask);
+            writeToJournal(put(allSubtasks.get(subtask.getId())));
+        }
     }
 
     /**
      * Удаление задачи по идентификатору.
      */
     @Override
-    public void deleteTaskForID(long numberId) {
-        super.deleteTaskForID(numberId);
-        save();
+    public synchronized void deleteTaskForID(long numberId) {
+        synchronized (journalLock) {
+            super.deleteTaskForID(numberId);
+            writeToJournal(record(JournalOperation.DEL, numberId));
+        }
     }
 
     /**
      * Удаление эпика по идентификатору.
      */
     @Override
-    public void deleteEpicForID(long numberId) {
-        super.deleteEpicForID(numberId);
-        save();
+    public synchronized void deleteEpicForID(long numberId) {
+        synchronized (journalLock) {
+            super.deleteEpicForID(numberId);
+            writeToJournal(record(JournalOperation.DEL, numberId));
+        }
     }
 
     /**
      * Удаление подзадачи по идентификатору.
      */
     @Override
-    public void deleteSubtaskForID(long numberId) {
-        super.deleteSubtaskForID(numberId);
-        save();
+    public synchronized void deleteSubtaskForID(long numberId) {
+        synchronized (journalLock) {
+            super.deleteSubtaskForID(numberId);
+            writeToJournal(record(JournalOperation.DEL, numberId));
+        }
     }
 
     /**
      * Установка статуса для задачи
      */
     @Override
-    public Task setStatusForTask(Task task, Status status) {
-        Task childTask = super.setStatusForTask(task, status);
-        save();
-        return childTask;
+    public synchronized Task setStatusForTask(Task task, Status status) {
+        synchronized (journalLock) {
+            Task childTask = super.setStatusForTask(task, status);
+            if (allTasks.containsKey(childTask.getId())) {
+                writeToJournal(put(childTask));
+            }
+            return childTask;
+        }
     }
 
     /**
      * Установка статуса для подзадачи
      */
     @Override
-    public Subtask setStatusForSubtask(Subtask subtask, Status status) {
-        Subtask childSubtask = super.setStatusForSubtask(subtask, status);
-        save();
-        return childSubtask;
+    public synchronized Subtask setStatusForSubtask(Subtask subtask, Status status) {
+        synchronized (journalLock) {
+            Subtask childSubtask = super.setStatusForSubtask(subtask, status);
+            writeToJournal(put(childSubtask), record(JournalOperation.FORGET, childSubtask.getEpicId()));
+            return childSubtask;
+        }
     }
 
     /**
      * Установка статуса для эпиков
      */
     @Override
-    public void setStatusForEpic(long numberEpicID) {
-        super.setStatusForEpic(numberEpicID);
-        save();
+    public synchronized void setStatusForEpic(long numberEpicID) {
+        synchronized (journalLock) {
+            super.setStatusForEpic(numberEpicID);
+            writeToJournal(put(allEpicTasks.get(numberEpicID)));
+        }
+    }
+
+    /**
+     * Создание задачи любого типа с сохранением времени из задачи.
+     */
+    @Override
+    public synchronized void createTasks(Task task) {
+        synchronized (journalLock) {
+            super.createTasks(task);
+            writeToJournal(put(task));
+        }
     }
 
     /**
      * Создание задачи. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Task task) {
-        long childTask = super.createTask(task);
-        save();
-        return childTask;
+    public synchronized long createTask(Task task) {
+        synchronized (journalLock) {
+            long childTask = super.createTask(task);
+            writeToJournal(put(task));
+            return childTask;
+        }
     }
 
     /**
      * Создание эпика. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Epic epic) {
-        long childEpic = super.createTask(epic);
-        save();
-        return childEpic;
+    public synchronized long createTask(Epic epic) {
+        synchronized (journalLock) {
+            long childEpic = super.createTask(epic);
+            writeToJournal(put(epic));
+            return childEpic;
+        }
     }
 
     /**
      * Создание подзадачи. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Subtask subtask) {
-        long childSubtask = super.createTask(subtask);
-        save();
-        return childSubtask;
+    public synchronized long createTask(Subtask subtask) {
+        synchronized (journalLock) {
+            long childSubtask = super.createTask(subtask);
+            if (allSubtasks.containsKey(childSubtask)) {
+                writeToJournal(put(subtask));
+            }
+            return childSubtask;
+        }
     }
 
     /**
@@ -328,8 +886,10 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      */
     @Override
     public Task getTaskByID(long numberId) {
-        Task task = super.getTaskByID(numberId);
-        save();
+        Task task = getTaskByIdWithoutStory(numberId);
+        if (task != null) {
+            recordView(task);
+        }
         return task;
     }
 
@@ -338,8 +898,10 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      */
     @Override
     public Epic getEpicByID(long numberId) {
-        Epic epic = super.getEpicByID(numberId);
-        save();
+        Epic epic = getEpicByIdWithoutStory(numberId);
+        if (epic != null) {
+            recordView(epic);
+        }
         return epic;
     }
 
@@ -348,37 +910,56 @@ public class FileBackedTasksManager extends InMemoryTaskManager {
      */
     @Override
     public Subtask getSubtaskByID(long numberId) {
-        Subtask subtask = super.getSubtaskByID(numberId);
-        save();
+        Subtask subtask = getSubtaskByIdWithoutStory(numberId);
+        if (subtask != null) {
+            recordView(subtask);
+        }
         return subtask;
     }
 
     @Override
-    public LocalDateTime setStartTimeEpic(Epic epic) {
-        LocalDateTime localDateTime = super.setStartTimeEpic(epic);
-        save();
-        return localDateTime;
+    public synchronized LocalDateTime setStartTimeEpic(Epic epic) {
+        synchronized (journalLock) {
+            LocalDateTime localDateTime = super.setStartTimeEpic(epic);
+            writeEpicToJournal(epic);
+            return localDateTime;
+        }
     }
 
     @Override
-    public LocalDateTime setEndTimeEpic(Epic epic) {
-        LocalDateTime localDateTime = super.setEndTimeEpic(epic);
-        save();
-        return localDateTime;
+    public synchronized LocalDateTime setEndTimeEpic(Epic epic) {
+        synchronized (journalLock) {
+            LocalDateTime localDateTime = super.setEndTimeEpic(epic);
+            writeEpicToJournal(epic);
+            return localDateTime;
+        }
     }
 
     @Override
-    public Duration setDurationEpic(Epic epic) {
-        Duration duration = super.setDurationEpic(epic);
-        save();
-        return duration;
+    public synchronized Duration setDurationEpic(Epic epic) {
+        synchronized (journalLock) {
+            Duration duration = super.setDurationEpic(epic);
+            writeEpicToJournal(epic);
+            return duration;
+        }
     }
 
     @Override
-    public Duration updateTimeEpic(Epic epic) {
-        Duration duration = super.updateTimeEpic(epic);
-        save();
-        return duration;
+    public synchronized Duration updateTimeEpic(Epic epic) {
+        synchronized (journalLock) {
+            Duration duration = super.updateTimeEpic(epic);
+            writeEpicToJournal(epic);
+            return duration;
+        }
+    }
+
+    /**
+     * Запись эпика в журнал, если он уже сохранен в менеджере
+     */
+    private void writeEpicToJournal(Epic epic) {
+        if (allEpicTasks.containsKey(epic.getId())) {
+            writeToJournal(put(epic));
+        }
     }
 
     @Override
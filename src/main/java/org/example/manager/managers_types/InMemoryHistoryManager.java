@@ -4,9 +4,16 @@ import org.example.manager.interfaces_and_utilities.HistoryManager;
 import org.example.tasks.Task;
 
 import java.util.*;
+import java.util.function.Consumer;
 
+/**
+ * История просмотров. Методы синхронизированы: история меняется при каждом чтении задачи по id.
+ * Если задач в истории больше capacity, самая давно просмотренная удаляется из головы списка.
+ */
 public class InMemoryHistoryManager implements HistoryManager {
 
+    private final int capacity;
+
     /**
      * Возможность хранить и получать Node за O(1).
      */
@@ -17,23 +24,43 @@ public class InMemoryHistoryManager implements HistoryManager {
     private Node head;
     private Node tail;
 
+    /**
+     * История без ограничения размера
+     */
+    public InMemoryHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
     /**
      * Добавление задач в историю
      */
     @Override
-    public void add(Task task) {
+    public synchronized void add(Task task) {
         if (nodeValuesByIdNumbers.containsKey(task.getId())) {
             Node requiredNode = nodeValuesByIdNumbers.get(task.getId());
             removeNode(requiredNode);
         }
         linkLast(task);
+        if (nodeValuesByIdNumbers.size() > capacity) {
+            removeNode(head);
+        }
     }
 
     /**
      * удаляет задачи из списка просмотренных.
      */
     @Override
-    public void remove(long id) {
+    public synchronized void remove(long id) {
         Node requiredNode = nodeValuesByIdNumbers.get(id);
         removeNode(requiredNode);
     }
@@ -42,10 +69,37 @@ public class InMemoryHistoryManager implements HistoryManager {
      * Получение истории
      */
     @Override
-    public List<Task> getHistory() {
+    public synchronized List<Task> getHistory() {
         return getTask();
     }
 
+    /**
+     * Получение страницы истории
+     */
+    @Override
+    public synchronized List<Task> getHistory(int from, int limit) {
+        List<Task> page = new ArrayList<>(Math.min(Math.max(limit, 0), nodeValuesByIdNumbers.size()));
+        Node node = head;
+        for (int i = 0; i < from && node != null; i++) {
+            node = node.next;
+        }
+        while (page.size() < limit && node != null) {
+            page.add(node.data);
+            node = node.next;
+        }
+        return page;
+    }
+
+    /**
+     * Обход истории без копирования
+     */
+    @Override
+    public synchronized void forEach(Consumer<? super Task> action) {
+        for (Node node = head; node != null; node = node.next) {
+            action.accept(node.data);
+        }
+    }
+
     /**
      * Замена ссылок и добавление в конец
      */
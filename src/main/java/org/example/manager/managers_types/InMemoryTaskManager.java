@@ -8,7 +8,14 @@ import org.example.tasks.*;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Менеджер задач в памяти. Безопасен для одновременных вызовов из нескольких потоков:
+ * изменения выполняются по одному под монитором менеджера, чтение списков, расписания и задач
+ * по id идет без блокировок по таблицам LongMap и расписанию на ConcurrentSkipListMap
+ * и видит состояние на момент обхода. Id выдаются атомарным счетчиком.
+ */
 public class InMemoryTaskManager implements TaskManager {
 
     /**
@@ -19,24 +26,26 @@ public class InMemoryTaskManager implements TaskManager {
     /**
      * Возможность хранить задачи всех типов.
      */
-    protected final Map<Long, Task> allTasks = new HashMap<>();
-    protected final Map<Long, Epic> allEpicTasks = new HashMap<>();
-    protected final Map<Long, Subtask> allSubtasks = new HashMap<>();
+    protected final LongMap<Task> allTasks = new LongMap<>();
+    protected final LongMap<Epic> allEpicTasks = new LongMap<>();
+    protected final LongMap<Subtask> allSubtasks = new LongMap<>();
 
-    protected final Map<LocalDateTime, Task> prioritizedMapOfTasks = new TreeMap<>();
+    /**
+     * Задачи и подзадачи, упорядоченные по времени старта и id.
+     */
+    protected final TimeSlotIndex prioritizedTasks = new TimeSlotIndex();
 
-    protected long createdID = 0L;
+    protected final AtomicLong createdID = new AtomicLong();
 
     @Override
-    public void createTasks(Task task) {
+    public synchronized void createTasks(Task task) {
         TypesTasks type = task.getType();
         if (type == TypesTasks.TASK) {
             long id = creatingID();
             task.setId(id);
-            task.setType(task.getType());
             task.setStatus(Status.NEW);
 
-            if (task.getStartTime() == null) {
+            if (task.startEpochSecond() == Task.NO_TIME) {
                 task.setStartTime(LocalDateTime.now());
                 task.setDuration(Duration.ofHours(1));
             }
@@ -48,10 +57,9 @@ public class InMemoryTaskManager implements TaskManager {
             long id = creatingID();
             long idEpic = task.getEpicId();
             task.setId(id);
-            task.setType(task.getType());
             task.setStatus(Status.NEW);
 
-            if (task.getStartTime() == null) {
+            if (task.startEpochSecond() == Task.NO_TIME) {
                 task.setStartTime(LocalDateTime.now());
                 task.setDuration(Duration.ofHours(1));
             }
@@ -60,11 +68,12 @@ public class InMemoryTaskManager implements TaskManager {
             allSubtasks.put(id, (Subtask) task);
             addTasksInPrioritizedList(task);
             Epic epic = getEpicByIdWithoutStory(idEpic);
-            epic.getIdsOfSubtasksEpic().add(id);
+            epic.addSubtask((Subtask) task);
+            setStatusForEpic(idEpic);
+            updateTimeEpic(epic);
         } else if (type == TypesTasks.EPIC) {
             long id = creatingID();
             task.setId(id);
-            task.setType(task.getType());
             task.setStatus(Status.NEW);
 
             setStartTimeEpic((Epic) task);
@@ -78,10 +87,9 @@ public class InMemoryTaskManager implements TaskManager {
      * Создание задачи. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Task task) {
+    public synchronized long createTask(Task task) {
         long thisID = creatingID();
         task.setId(thisID);
-        task.setType(task.getType());
         task.setStatus(Status.NEW);
         task.setStartTime(LocalDateTime.now());
         task.setDuration(Duration.ofHours(1));
@@ -95,10 +103,9 @@ public class InMemoryTaskManager implements TaskManager {
      * Создание эпика. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Epic epic) {
+    public synchronized long createTask(Epic epic) {
         long thisID = creatingID();
         epic.setId(thisID);
-        epic.setType(epic.getType());
         epic.setStatus(Status.NEW);
 
         setStartTimeEpic(epic);
@@ -114,12 +121,11 @@ public class InMemoryTaskManager implements TaskManager {
      * Создание подзадачи. Сам объект должен передаваться в качестве параметра.
      */
     @Override
-    public long createTask(Subtask subtask) {
+    public synchronized long createTask(Subtask subtask) {
         long thisID = creatingID();
         long epicID = subtask.getEpicId();
         if (allEpicTasks.containsKey(epicID)) {
             subtask.setId(thisID);
-            subtask.setType(subtask.getType());
             subtask.setStatus(Status.NEW);
             subtask.setStartTime(LocalDateTime.now());
             subtask.setDuration(Duration.ofHours(1));
@@ -129,7 +135,7 @@ public class InMemoryTaskManager implements TaskManager {
             addTasksInPrioritizedList(subtask);
 
             Epic thisEpic = allEpicTasks.get(epicID);
-            thisEpic.getIdsOfSubtasksEpic().add(thisID);
+            thisEpic.addSubtask(subtask);
             setStatusForEpic(epicID);
             updateTimeEpic(thisEpic);
         }
@@ -167,9 +173,7 @@ public class InMemoryTaskManager implements TaskManager {
     public List<Subtask> getListSubtasksOfEpic(Long idEpic) {
         List<Subtask> subtasksEpic = new ArrayList<>();
         if (allEpicTasks.containsKey(idEpic)) {
-            for (Long aLong : getEpicByIdWithoutStory(idEpic).getIdsOfSubtasksEpic()) {
-                subtasksEpic.add(getSubtaskByIdWithoutStory(aLong));
-            }
+            getEpicByIdWithoutStory(idEpic).forEachSubtaskId(id -> subtasksEpic.add(getSubtaskByIdWithoutStory(id)));
         }
         return subtasksEpic;
     }
@@ -179,20 +183,28 @@ public class InMemoryTaskManager implements TaskManager {
      */
     @Override
     public List<Task> getPrioritizedTasks() {
-        return new ArrayList<>(prioritizedMapOfTasks.values());
+        return prioritizedTasks.view();
+    }
+
+    /**
+     * Получение страницы списка задач по приоритетам.
+     */
+    @Override
+    public List<Task> getPrioritizedTasks(int from, int limit) {
+        return prioritizedTasks.page(from, limit);
     }
 
     /**
      * Удаление всех задач.
      */
     @Override
-    public void deleteListOfTask() {
+    public synchronized void deleteListOfTask() {
         for (Long aLong : allTasks.keySet()) {
             historyManager.remove(aLong);
         }
 
-        for (Task value : allTasks.values()) {
-            prioritizedMapOfTasks.remove(value.getStartTime());
+        for (Long aLong : allTasks.keySet()) {
+            prioritizedTasks.remove(aLong);
         }
 
         allTasks.clear();
@@ -202,12 +214,12 @@ public class InMemoryTaskManager implements TaskManager {
      * Удаление всех эпиков.
      */
     @Override
-    public void deleteListOfEpic() {
+    public synchronized void deleteListOfEpic() {
         for (Epic epic : allEpicTasks.values()) {
-            for (Long idSubtask : epic.getIdsOfSubtasksEpic()) {
-                prioritizedMapOfTasks.remove(getSubtaskByIdWithoutStory(idSubtask).getStartTime());
+            epic.forEachSubtaskId(idSubtask -> {
+                prioritizedTasks.remove(idSubtask);
                 historyManager.remove(idSubtask);
-            }
+            });
             historyManager.remove(epic.getId());
         }
 
@@ -219,16 +231,16 @@ public class InMemoryTaskManager implements TaskManager {
      * Удаление всех подзадач.
      */
     @Override
-    public void deleteListOfSubtask() {
+    public synchronized void deleteListOfSubtask() {
         for (Subtask subtask : allSubtasks.values()) {
-            prioritizedMapOfTasks.remove(subtask.getStartTime());
+            prioritizedTasks.remove(subtask.getId());
             historyManager.remove(subtask.getId());
         }
 
         allSubtasks.clear();
 
         for (Long aLong : allEpicTasks.keySet()) {
-            allEpicTasks.get(aLong).getIdsOfSubtasksEpic().clear();
+            allEpicTasks.get(aLong).clearSubtasks();
             setStatusForEpic(aLong);
             updateTimeEpic(getEpicByIdWithoutStory(aLong));
         }
@@ -298,14 +310,15 @@ public class InMemoryTaskManager implements TaskManager {
      * Обновление задачи.
      */
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         final Task savedTask = allTasks.get(task.getId());
-        if (checkTasksForIntersectionsByTime(savedTask)) {
+        if (isTimeSlotFree(task, savedTask.getId())) {
             savedTask.setNameTask(task.getNameTask());
             savedTask.setDescription(task.getDescription());
             savedTask.setStatus(Status.NEW);
             savedTask.setStartTime(task.getStartTime());
             savedTask.setDuration(task.getDuration());
+            addTasksInPrioritizedList(savedTask);
         }
     }
 
@@ -313,7 +326,7 @@ public class InMemoryTaskManager implements TaskManager {
      * Обновление эпика.
      */
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         final Epic savedEpic = allEpicTasks.get(epic.getId());
         savedEpic.setNameTask(epic.getNameTask());
         savedEpic.setDescription(epic.getDescription());
@@ -323,15 +336,20 @@ public class InMemoryTaskManager implements TaskManager {
      * Обновление подзадачи.
      */
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         Long id = subtask.getId();
         final Subtask savedSubtask = allSubtasks.get(id);
-        if (checkTasksForIntersectionsByTime(savedSubtask)) {
+        if (isTimeSlotFree(subtask, id)) {
+            Epic epic = allEpicTasks.get(savedSubtask.getEpicId());
+            epic.excludeFromRollup(savedSubtask);
             savedSubtask.setNameTask(subtask.getNameTask());
             savedSubtask.setDescription(subtask.getDescription());
             savedSubtask.setStatus(Status.NEW);
             savedSubtask.setStartTime(subtask.getStartTime());
             savedSubtask.setDuration(subtask.getDuration());
+            addTasksInPrioritizedList(savedSubtask);
+            epic.includeInRollup(savedSubtask);
+            setStatusForEpic(epic.getId());
         }
         updateTimeEpic(allEpicTasks.get(savedSubtask.getEpicId()));
     }
@@ -340,10 +358,11 @@ public class InMemoryTaskManager implements TaskManager {
      * Удаление задачи по идентификатору.
      */
     @Override
-    public void deleteTaskForID(long numberId) {
+    public synchronized void deleteTaskForID(long numberId) {
         Task task = allTasks.get(numberId);
         if (task != null) {
             allTasks.remove(numberId);
+            prioritizedTasks.remove(numberId);
             historyManager.remove(numberId);
         }
     }
@@ -352,14 +371,14 @@ public class InMemoryTaskManager implements TaskManager {
      * Удаление эпика по идентификатору.
      */
     @Override
-    public void deleteEpicForID(long numberId) {
+    public synchronized void deleteEpicForID(long numberId) {
         Epic epic = allEpicTasks.get(numberId);
         if (epic != null) {
-            for (Long idSubtask : epic.getIdsOfSubtasksEpic()) {
-                prioritizedMapOfTasks.remove(getSubtaskByIdWithoutStory(idSubtask).getStartTime());
+            epic.forEachSubtaskId(idSubtask -> {
+                prioritizedTasks.remove(idSubtask);
                 historyManager.remove(idSubtask);
                 allSubtasks.remove(idSubtask);
-            }
+            });
 
             allEpicTasks.remove(numberId);
             historyManager.remove(numberId);
@@ -370,14 +389,16 @@ public class InMemoryTaskManager implements TaskManager {
      * Удаление подзадачи по идентификатору.
      */
     @Override
-    public void deleteSubtaskForID(long numberId) {
+    public synchronized void deleteSubtaskForID(long numberId) {
         Subtask subtask = allSubtasks.get(numberId);
         if (subtask != null) {
             Epic epic = allEpicTasks.get(subtask.getEpicId());
-            epic.getIdsOfSubtasksEpic().remove(numberId);
+            epic.removeSubtask(subtask);
             allSubtasks.remove(numberId);
+            prioritizedTasks.remove(numberId);
             historyManager.remove(numberId);
-            updateTimeEpic(allEpicTasks.get(subtask.getEpicId()));
+            setStatusForEpic(epic.getId());
+            updateTimeEpic(epic);
         }
     }
 
@@ -385,7 +406,7 @@ public class InMemoryTaskManager implements TaskManager {
      * Установка статуса для задачи
      */
     @Override
-    public Task setStatusForTask(Task task, Status status) {
+    public synchronized Task setStatusForTask(Task task, Status status) {
         if (!(task instanceof Epic)) {
             task.setStatus(status);
             allTasks.put(task.getId(), task);
@@ -397,12 +418,21 @@ public class InMemoryTaskManager implements TaskManager {
      * Установка статуса для подзадачи
      */
     @Override
-    public Subtask setStatusForSubtask(Subtask subtask, Status status) {
+    public synchronized Subtask setStatusForSubtask(Subtask subtask, Status status) {
+        Epic epic = getEpicByID(subtask.getEpicId());
+        Subtask savedSubtask = allSubtasks.get(subtask.getId());
+        if (savedSubtask != null) {
+            epic.excludeFromRollup(savedSubtask);
+        }
+
         subtask.setStatus(status);
         allSubtasks.put(subtask.getId(), subtask);
 
-        Epic epic = getEpicByID(subtask.getEpicId());
-        epic.getIdsOfSubtasksEpic().add(subtask.getId());
+        if (savedSubtask != null) {
+            epic.includeInRollup(subtask);
+        } else {
+            epic.addSubtask(subtask);
+        }
         historyManager.remove(epic.getId());
         setStatusForEpic(subtask.getEpicId());
 
@@ -413,23 +443,9 @@ public class InMemoryTaskManager implements TaskManager {
      * Установка статуса для эпиков
      */
     @Override
-    public void setStatusForEpic(long numberEpicID) {
-        boolean isStatus = true;
-
+    public synchronized void setStatusForEpic(long numberEpicID) {
         Epic newEpic = allEpicTasks.get(numberEpicID);
-        for (Long aLong : newEpic.getIdsOfSubtasksEpic()) {
-            if (allSubtasks.get(aLong).getStatus().equals(Status.IN_PROGRESS)
-                    || allSubtasks.get(aLong).getStatus().equals(Status.NEW)) {
-                isStatus = false;
-            }
-        }
-
-        if (isStatus) {
-            newEpic.setStatus(Status.DONE);
-        } else {
-            newEpic.setStatus(Status.IN_PROGRESS);
-        }
-
+        newEpic.setStatus(newEpic.getRollupStatus());
         allEpicTasks.put(numberEpicID, newEpic);
     }
 
@@ -437,19 +453,7 @@ public class InMemoryTaskManager implements TaskManager {
      * Установка времени старта для эпиков
      */
     protected LocalDateTime setStartTimeEpic(Epic epic) {
-        epic.setStartTime(LocalDateTime.MAX);
-        if (epic.getIdsOfSubtasksEpic() != null) {
-            if (!epic.getIdsOfSubtasksEpic().isEmpty()) {
-                for (Long idSubtaskThisEpic : epic.getIdsOfSubtasksEpic()) {
-                    Subtask subtask = getSubtaskByIdWithoutStory(idSubtaskThisEpic);
-                    LocalDateTime startSubtask = subtask.getStartTime();
-                    epic.setStartTime(startSubtask);
-                    if (startSubtask.isBefore(epic.getStartTime())) {
-                        epic.setStartTime(startSubtask);
-                    }
-                }
-            }
-        }
+        epic.setStartTime(epic.getRollupStartTime());
         return epic.getStartTime();
     }
 
@@ -457,19 +461,7 @@ public class InMemoryTaskManager implements TaskManager {
      * Установка времени окончания для эпиков
      */
     protected LocalDateTime setEndTimeEpic(Epic epic) {
-        epic.setEndTime(LocalDateTime.MIN);
-        if (epic.getIdsOfSubtasksEpic() != null) {
-            if (!epic.getIdsOfSubtasksEpic().isEmpty()) {
-                for (Long idSubtaskThisEpic : epic.getIdsOfSubtasksEpic()) {
-                    Subtask subtask = getSubtaskByIdWithoutStory(idSubtaskThisEpic);
-                    LocalDateTime endSubtask = subtask.getEndTime();
-                    epic.setEndTime(endSubtask);
-                    if (endSubtask.isAfter(epic.getEndTime())) {
-                        epic.setEndTime(endSubtask);
-                    }
-                }
-            }
-        }
+        epic.setEndTime(epic.getRollupEndTime());
         return epic.getEndTime();
     }
 
@@ -482,24 +474,16 @@ public class InMemoryTaskManager implements TaskManager {
     }
 
     /**
-     * Обновление временных меток для эпиков по подзадачам
+     * Обновление временных меток для эпиков по подзадачам.
+     * Продолжительность эпика с подзадачами - сумма продолжительностей подзадач.
      */
     protected Duration updateTimeEpic(Epic epic) {
-        LocalDateTime startTimeEpic = epic.getStartTime();
-        LocalDateTime endTimeEpic = epic.getEndTime();
-        Duration durationEpic = epic.getDuration();
-        for (Long aLong : epic.getIdsOfSubtasksEpic()) {
-            LocalDateTime startTimeSubtask = getSubtaskByIdWithoutStory(aLong).getStartTime();
-            LocalDateTime endTimeSubtask = getSubtaskByIdWithoutStory(aLong).getEndTime();
-
-            if (startTimeSubtask.isBefore(startTimeEpic)) {
-                epic.setStartTime(startTimeSubtask);
-            }
-            if (endTimeSubtask.isAfter(endTimeEpic)) {
-                epic.setEndTime(endTimeSubtask);
-            }
-            durationEpic = durationEpic.plus(getSubtaskByIdWithoutStory(aLong).getDuration());
-            epic.setDuration(durationEpic);
+        epic.setStartTime(epic.getRollupStartTime());
+        epic.setEndTime(epic.getRollupEndTime());
+        if (epic.hasSubtasksInRollup()) {
+            epic.setDuration(epic.getRollupDuration());
+        } else {
+            epic.setDuration(Duration.between(epic.getStartTime(), epic.getEndTime()));
         }
         return epic.getDuration();
     }
@@ -508,23 +492,14 @@ public class InMemoryTaskManager implements TaskManager {
      * Проверка задач на пересечение во времени.
      */
     private Boolean checkTasksForIntersectionsByTime(Task newTask) {
+        return isTimeSlotFree(newTask, newTask.getId());
+    }
 
-        if (prioritizedMapOfTasks.isEmpty()) {
-            return true;
-        }
-        for (Task task : prioritizedMapOfTasks.values()) {
-            if (task.getId() == newTask.getId()) {
-                continue;
-            }
-            if (!newTask.getEndTime().isAfter(task.getStartTime())) {
-                continue;
-            }
-            if (!newTask.getStartTime().isBefore(task.getEndTime())) {
-                continue;
-            }
-            return false;
-        }
-        return true;
+    /**
+     * Проверка, свободен ли интервал задачи от всех задач, кроме задачи excludedId.
+     */
+    protected boolean isTimeSlotFree(Task task, long excludedId) {
+        return prioritizedTasks.isFree(task, excludedId);
     }
 
     /**
@@ -533,7 +508,7 @@ public class InMemoryTaskManager implements TaskManager {
     protected void addTasksInPrioritizedList(Task task) {
         if (!(task instanceof Epic)) {
             if (checkTasksForIntersectionsByTime(task)) {
-                prioritizedMapOfTasks.put(task.getStartTime(), task);
+                prioritizedTasks.add(task);
             } else {
                 System.out.println("Измените время выполнения задачи - " + task.getId());
             }
@@ -552,14 +527,21 @@ public class InMemoryTaskManager implements TaskManager {
      * Создание нового ID
      */
     public long creatingID() {
-        return ++createdID;
+        return createdID.incrementAndGet();
     }
 
     /**
      * Получение сгенерированного id
      * */
     public long getCreatedID() {
-        return createdID;
+        return createdID.get();
+    }
+
+    /**
+     * Сдвиг счетчика id так, чтобы новые id были больше загруженного id
+     */
+    protected void advanceCreatedID(long id) {
+        createdID.accumulateAndGet(id, Math::max);
     }
 
     @Override
@@ -567,17 +549,17 @@ public class InMemoryTaskManager implements TaskManager {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         InMemoryTaskManager that = (InMemoryTaskManager) o;
-        return createdID == that.createdID
+        return createdID.get() == that.createdID.get()
                 && Objects.equals(historyManager, that.historyManager)
                 && Objects.equals(allTasks, that.allTasks)
                 && Objects.equals(allEpicTasks, that.allEpicTasks)
                 && Objects.equals(allSubtasks, that.allSubtasks)
-                && Objects.equals(prioritizedMapOfTasks, that.prioritizedMapOfTasks);
+                && Objects.equals(prioritizedTasks, that.prioritizedTasks);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(historyManager, allTasks, allEpicTasks, allSubtasks, prioritizedMapOfTasks, createdID);
+        return Objects.hash(historyManager, allTasks, allEpicTasks, allSubtasks, prioritizedTasks, createdID.get());
     }
 
     @Override
@@ -587,7 +569,7 @@ public class InMemoryTaskManager implements TaskManager {
                 ", allTasks=" + allTasks +
                 ", allEpicTasks=" + allEpicTasks +
                 ", allSubtasks=" + allSubtasks +
-                ", prioritizedTasks=" + prioritizedMapOfTasks +
+                ", prioritizedTasks=" + prioritizedTasks +
                 ", createdID=" + createdID +
                 '}';
     }
@@ -0,0 +1,258 @@
+package org.example.manager.managers_types;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Таблица задач по long id с открытой адресацией: ключи лежат в long[], без упаковки в Long
+ * и без объекта-узла на запись. Методы с примитивным id не создают объектов.
+ * Изменения должны выполняться по одному (под монитором менеджера), чтение и обход идут без блокировок:
+ * значение публикуется после ключа, ключ в занятом месте не меняется до перестроения таблицы,
+ * удаленная запись помечается надгробием и не сдвигает соседей (место занимает только тот же id),
+ * а при росте таблица строится заново и подменяется целиком. Надгробия убираются при перестроении.
+ */
+public class LongMap<V> extends AbstractMap<Long, V> {
+    private static final Object TOMBSTONE = new Object();
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+    private int tombstones;
+
+    public V get(long id) {
+        final Table current = table;
+        final int mask = current.keys.length - 1;
+        for (int slot = slot(id, mask); ; slot = (slot + 1) & mask) {
+            final Object value = current.values.get(slot);
+            if (value == null) {
+                return null;
+            }
+            if (value != TOMBSTONE && current.keys[slot] == id) {
+                return cast(value);
+            }
+        }
+    }
+
+    public boolean containsKey(long id) {
+        return get(id) != null;
+    }
+
+    public V put(long id, V value) {
+        Objects.requireNonNull(value, "Пустое значение для id " + id);
+        Table current = table;
+        int mask = current.keys.length - 1;
+        int slot = slot(id, mask);
+        for (; ; slot = (slot + 1) & mask) {
+            final Object old = current.values.get(slot);
+            if (old == null) {
+                break;
+            }
+            if (current.keys[slot] == id) {
+                current.values.set(slot, value);
+                if (old == TOMBSTONE) {
+                    tombstones--;
+                    size++;
+                    return null;
+                }
+                return cast(old);
+            }
+        }
+        if ((size + tombstones + 1) * 3L > current.keys.length * 2L) {
+            current = rebuild(size + 1);
+            mask = current.keys.length - 1;
+            slot = slot(id, mask);
+            while (current.values.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        current.keys[slot] = id;
+        current.values.set(slot, value);
+        size++;
+        return null;
+    }
+
+    public V remove(long id) {
+        final Table current = table;
+        final int mask = current.keys.length - 1;
+        for (int slot = slot(id, mask); ; slot = (slot + 1) & mask) {
+            final Object value = current.values.get(slot);
+            if (value == null) {
+                return null;
+            }
+            if (value != TOMBSTONE && current.keys[slot] == id) {
+                current.values.set(slot, TOMBSTONE);
+                tombstones++;
+                size--;
+                return cast(value);
+            }
+        }
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof Long ? get(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(Long key, V value) {
+        return put(key.longValue(), value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key instanceof Long ? remove(((Long) key).longValue()) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+        tombstones = 0;
+    }
+
+    /**
+     * Значения без создания записей Map.Entry
+     */
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new TableIterator<>(table) {
+                    @Override
+                    V element(long key, Object value) {
+                        return cast(value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Entry<Long, V>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Long, V>> iterator() {
+                return new TableIterator<>(table) {
+                    @Override
+                    Entry<Long, V> element(long key, Object value) {
+                        return new SimpleImmutableEntry<>(key, cast(value));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Перестроение таблицы под count записей без надгробий
+     */
+    private Table rebuild(int count) {
+        final Table old = table;
+        int capacity = INITIAL_CAPACITY;
+        while (count * 3L > capacity * 2L) {
+            capacity <<= 1;
+        }
+        final Table rebuilt = new Table(capacity);
+        final int mask = capacity - 1;
+        for (int i = 0; i < old.keys.length; i++) {
+            final Object value = old.values.get(i);
+            if (value != null && value != TOMBSTONE) {
+                int slot = slot(old.keys[i], mask);
+                while (rebuilt.values.get(slot) != null) {
+                    slot = (slot + 1) & mask;
+                }
+                rebuilt.keys[slot] = old.keys[i];
+                rebuilt.values.lazySet(slot, value);
+            }
+        }
+        tombstones = 0;
+        table = rebuilt;
+        return rebuilt;
+    }
+
+    /**
+     * Хеш как у HashMap для Long: последовательные id занимают соседние места без коллизий,
+     * и обход идет по возрастанию id, пока id меньше размера таблицы.
+     */
+    private static int slot(long id, int mask) {
+        final int hash = (int) (id ^ (id >>> 32));
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final AtomicReferenceArray<Object> values;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    /**
+     * Обход занятых мест таблицы, какой она была при создании итератора
+     */
+    private abstract static class TableIterator<E> implements Iterator<E> {
+        private final Table table;
+        private int nextSlot = -1;
+        private Object nextValue;
+
+        private TableIterator(Table table) {
+            this.table = table;
+            advance();
+        }
+
+        abstract E element(long key, Object value);
+
+        @Override
+        public boolean hasNext() {
+            return nextValue != null;
+        }
+
+        @Override
+        public E next() {
+            if (nextValue == null) {
+                throw new NoSuchElementException();
+            }
+            final E element = element(table.keys[nextSlot], nextValue);
+            advance();
+            return element;
+        }
+
+        private void advance() {
+            nextValue = null;
+            while (++nextSlot < table.keys.length) {
+                final Object value = table.values.get(nextSlot);
+                if (value != null && value != TOMBSTONE) {
+                    nextValue = value;
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.example.manager.managers_types;
+
+import org.example.manager.interfaces_and_utilities.HistoryManager;
+import org.example.tasks.Task;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * История просмотров без упаковки id и объектов-узлов.
+ * Двусвязный список хранится в параллельных массивах ids/tasks/prev/next, свободные ячейки связаны
+ * через next. Ячейка задачи ищется по id в хеш-таблице с открытой адресацией long -> int
+ * и удалением со сдвигом, без надгробий. add и remove ничего не создают, пока массивы не растут.
+ * Если задач в истории больше capacity, самая давно просмотренная удаляется из головы списка.
+ */
+public class PrimitiveHistoryManager implements HistoryManager {
+    private static final int NONE = -1;
+    private static final int INITIAL_NODES = 16;
+
+    private final int capacity;
+
+    private long[] ids;
+    private Task[] tasks;
+    private int[] prev;
+    private int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    private int free = NONE;
+    private int allocated;
+    private int size;
+
+    /**
+     * Хеш-таблица id -> ячейка + 1; 0 - пустое место.
+     */
+    private long[] keys;
+    private int[] cells;
+    private int mask;
+
+    /**
+     * История без ограничения размера
+     */
+    public PrimitiveHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity наибольшее количество задач в истории
+     */
+    public PrimitiveHistoryManager(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер истории должен быть положительным: " + capacity);
+        }
+        this.capacity = capacity;
+        resizeNodes(Math.min(capacity, INITIAL_NODES));
+    }
+
+    /**
+     * Добавление задач в историю
+     */
+    @Override
+    public synchronized void add(Task task) {
+        final long id = task.getId();
+        int node = find(id);
+        if (node != NONE) {
+            unlink(node);
+        } else {
+            if (size == capacity) {
+                final int eldest = head;
+                unlink(eldest);
+                delete(ids[eldest]);
+                release(eldest);
+            }
+            node = allocate();
+            ids[node] = id;
+            insert(id, node);
+        }
+        tasks[node] = task;
+        linkLast(node);
+    }
+
+    /**
+     * удаляет задачи из списка просмотренных.
+     */
+    @Override
+    public synchronized void remove(long id) {
+        final int node = find(id);
+        if (node != NONE) {
+            unlink(node);
+            delete(id);
+            release(node);
+        }
+    }
+
+    /**
+     * Получение истории
+     */
+    @Override
+    public synchronized List<Task> getHistory() {
+        List<Task> history = new ArrayList<>(size);
+        for (int node = head; node != NONE; node = next[node]) {
+            history.add(tasks[node]);
+        }
+        return history;
+    }
+
+    /**
+     * Получение страницы истории
+     */
+    @Override
+    public synchronized List<Task> getHistory(int from, int limit) {
+        List<Task> page = new ArrayList<>(Math.min(Math.max(limit, 0), size));
+        int node = head;
+        for (int i = 0; i < from && node != NONE; i++) {
+            node = next[node];
+        }
+        while (page.size() < limit && node != NONE) {
+            page.add(tasks[node]);
+            node = next[node];
+        }
+        return page;
+    }
+
+    /**
+     * Обход истории без копирования
+     */
+    @Override
+    public synchronized void forEach(Consumer<? super Task> action) {
+        for (int node = head; node != NONE; node = next[node]) {
+            action.accept(tasks[node]);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void linkLast(int node) {
+        prev[node] = tail;
+        next[node] = NONE;
+        if (tail == NONE) {
+            head = node;
+        } else {
+            next[tail] = node;
+        }
+        tail = node;
+        size++;
+    }
+
+    private void unlink(int node) {
+        final int before = prev[node];
+        final int after = next[node];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+        size--;
+    }
+
+    /**
+     * Свободная ячейка: из списка освобожденных, затем из еще не занятых, затем после увеличения массивов
+     */
+    private int allocate() {
+        if (free != NONE) {
+            final int node = free;
+            free = next[node];
+            return node;
+        }
+        if (allocated == ids.length) {
+            resizeNodes((int) Math.min((long) ids.length * 2, capacity));
+        }
+        return allocated++;
+    }
+
+    private void release(int node) {
+        tasks[node] = null;
+        next[node] = free;
+        free = node;
+    }
+
+    private void resizeNodes(int length) {
+        ids = ids == null ? new long[length] : Arrays.copyOf(ids, length);
+        tasks = tasks == null ? new Task[length] : Arrays.copyOf(tasks, length);
+        prev = prev == null ? new int[length] : Arrays.copyOf(prev, length);
+        next = next == null ? new int[length] : Arrays.copyOf(next, length);
+
+        final long[] oldKeys = keys;
+        final int[] oldCells = cells;
+        final int tableSize = Integer.highestOneBit(Math.max(length, 1) * 2 - 1) * 2;
+        keys = new long[tableSize];
+        cells = new int[tableSize];
+        mask = tableSize - 1;
+        if (oldKeys != null) {
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCells[i] != 0) {
+                    insert(oldKeys[i], oldCells[i] - 1);
+                }
+            }
+        }
+    }
+
+    private int find(long id) {
+        for (int slot = slot(id); cells[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return cells[slot] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    private void insert(long id, int node) {
+        int slot = slot(id);
+        while (cells[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        cells[slot] = node + 1;
+    }
+
+    /**
+     * Удаление из таблицы со сдвигом следующих ключей цепочки на освободившееся место
+     */
+    private void delete(long id) {
+        int slot = slot(id);
+        while (keys[slot] != id || cells[slot] == 0) {
+            slot = (slot + 1) & mask;
+        }
+        int gap = slot;
+        for (int current = (gap + 1) & mask; cells[current] != 0; current = (current + 1) & mask) {
+            final int home = slot(keys[current]);
+            if (((current - home) & mask) >= ((current - gap) & mask)) {
+                keys[gap] = keys[current];
+                cells[gap] = cells[current];
+                gap = current;
+            }
+        }
+        cells[gap] = 0;
+    }
+
+    /**
+     * Перемешивание битов id: последовательные id не должны попадать в соседние места таблицы
+     */
+    private int slot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PrimitiveHistoryManager that = (PrimitiveHistoryManager) o;
+        return Objects.equals(getHistory(), that.getHistory());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getHistory());
+    }
+
+    @Override
+    public String toString() {
+        return "PrimitiveHistoryManager{" +
+                "history=" + getHistory() +
+                '}';
+    }
+}
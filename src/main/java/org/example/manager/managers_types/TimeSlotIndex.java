@@ -0,0 +1,258 @@
+package org.example.manager.managers_types;
+
+import org.example.tasks.Task;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Расписание задач, упорядоченное по паре (время старта, id).
+ * Интервалы задач в расписании не пересекаются.
+ * Чтение, обход и проверка интервала идут без блокировок параллельно с записью и видят расписание
+ * на момент обхода; изменения должны выполняться по одному (под монитором менеджера).
+ */
+public class TimeSlotIndex {
+
+    private final NavigableMap<Slot, Task> tasksBySlot = new ConcurrentSkipListMap<>();
+    private final Map<Long, Slot> slotsById = new ConcurrentHashMap<>();
+    private final List<Task> view = new View();
+
+    /**
+     * Добавление задачи в расписание. Если задача уже в расписании, ее слот обновляется.
+     */
+    public void add(Task task) {
+        remove(task.getId());
+        Slot slot = new Slot(task.startEpochSecond(), task.startNano(), task.getId(), task);
+        tasksBySlot.put(slot, task);
+        slotsById.put(task.getId(), slot);
+    }
+
+    /**
+     * Удаление задачи из расписания по идентификатору.
+     */
+    public void remove(long id) {
+        Slot slot = slotsById.remove(id);
+        if (slot != null) {
+            tasksBySlot.remove(slot);
+        }
+    }
+
+    public boolean contains(long id) {
+        return slotsById.containsKey(id);
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    public boolean isEmpty() {
+        return tasksBySlot.isEmpty();
+    }
+
+    public void clear() {
+        tasksBySlot.clear();
+        slotsById.clear();
+    }
+
+    /**
+     * Проверка, свободен ли интервал задачи [старт, окончание) от всех задач, кроме задачи excludedId.
+     * Окончания задач ненулевой длины упорядочены так же, как и начала: достаточно идти от последней задачи,
+     * начавшейся раньше конца интервала, назад, пока окончание задачи позже начала интервала.
+     * Задачи нулевой длины могут стоять на границе другой задачи и порядок окончаний не сохраняют,
+     * поэтому на них обход не останавливается.
+     * Сравнения идут по секундам и наносекундам задач, без создания LocalDateTime,
+     * а обход - по ключам, без создания записей Map.Entry.
+     */
+    public boolean isFree(Task task, long excludedId) {
+        if (task.endEpochSecond() == Task.NO_TIME) {
+            return true;
+        }
+        final long start = task.startEpochSecond();
+        final int startNano = task.startNano();
+        Slot slot = tasksBySlot.lowerKey(new Slot(task.endEpochSecond(), task.endNano(), Long.MIN_VALUE, null));
+        while (slot != null) {
+            if (slot.task.endsAfter(start, startNano)) {
+                if (slot.id != excludedId) {
+                    return false;
+                }
+            } else if (!isEmptyInterval(slot.task)) {
+                break;
+            }
+            slot = tasksBySlot.lowerKey(slot);
+        }
+        return true;
+    }
+
+    private static boolean isEmptyInterval(Task task) {
+        return task.endEpochSecond() == task.startEpochSecond() && task.endNano() == task.startNano();
+    }
+
+    /**
+     * Живое представление расписания только для чтения.
+     */
+    public List<Task> view() {
+        return view;
+    }
+
+    /**
+     * Страница расписания: не больше limit задач, начиная с позиции from.
+     */
+    public List<Task> page(int from, int limit) {
+        List<Task> page = new ArrayList<>(Math.min(Math.max(limit, 0), size()));
+        Iterator<Task> iterator = tasksBySlot.values().iterator();
+        for (int i = 0; i < from && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TimeSlotIndex that = (TimeSlotIndex) o;
+        return Objects.equals(tasksBySlot, that.tasksBySlot);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tasksBySlot);
+    }
+
+    @Override
+    public String toString() {
+        return tasksBySlot.values().toString();
+    }
+
+    /**
+     * Ключ расписания: время старта в секундах и наносекундах и id, без ссылки на LocalDateTime.
+     * Задачи без времени старта (Task.NO_TIME) идут первыми. Старт копируется в ключ: задача может
+     * изменить время до того, как ее слот обновят. Ссылка на задачу нужна проверке интервала
+     * и в сравнении не участвует.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        private final long start;
+        private final int startNanos;
+        private final long id;
+        private final Task task;
+
+        private Slot(long start, int startNanos, long id, Task task) {
+            this.start = start;
+            this.startNanos = startNanos;
+            this.id = id;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Slot other) {
+            int byStart = Task.compareTime(start, startNanos, other.start, other.startNanos);
+            return byStart != 0 ? byStart : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Slot slot = (Slot) o;
+            return id == slot.id && start == slot.start && startNanos == slot.startNanos;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(start, startNanos, id);
+        }
+    }
+
+    /**
+     * Список поверх дерева: переход к соседу - поиск следующего ключа, без копирования задач.
+     */
+    private class View extends AbstractSequentialList<Task> {
+
+        @Override
+        public int size() {
+            return slotsById.size();
+        }
+
+        @Override
+        public ListIterator<Task> listIterator(int index) {
+            if (index < 0 || index > size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            ViewIterator iterator = new ViewIterator();
+            for (int i = 0; i < index; i++) {
+                iterator.next();
+            }
+            return iterator;
+        }
+    }
+
+    private class ViewIterator implements ListIterator<Task> {
+        private Slot previous;
+        private int nextIndex;
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry() != null;
+        }
+
+        @Override
+        public Task next() {
+            Map.Entry<Slot, Task> entry = nextEntry();
+            if (entry == null) {
+                throw new NoSuchElementException();
+            }
+            previous = entry.getKey();
+            nextIndex++;
+            return entry.getValue();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return previous != null;
+        }
+
+        @Override
+        public Task previous() {
+            if (previous == null) {
+                throw new NoSuchElementException();
+            }
+            Task task = tasksBySlot.get(previous);
+            previous = tasksBySlot.lowerKey(previous);
+            nextIndex--;
+            return task;
+        }
+
+        @Override
+        public int nextIndex() {
+            return nextIndex;
+        }
+
+        @Override
+        public int previousIndex() {
+            return nextIndex - 1;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Расписание доступно только для чтения");
+        }
+
+        @Override
+        public void set(Task task) {
+            throw new UnsupportedOperationException("Расписание доступно только для чтения");
+        }
+
+        @Override
+        public void add(Task task) {
+            throw new UnsupportedOperationException("Расписание доступно только для чтения");
+        }
+
+        private Map.Entry<Slot, Task> nextEntry() {
+            return previous == null ? tasksBySlot.firstEntry() : tasksBySlot.higherEntry(previous);
+        }
+    }
+}
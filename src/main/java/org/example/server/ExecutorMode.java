@@ -0,0 +1,56 @@
+package org.example.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Режим обработки запросов HTTP-сервера. Для пиков из сотен одновременных соединений нужны еще
+ * настройки HttpServerSettings, включенные до создания первого сервера.
+ */
+public enum ExecutorMode {
+    /**
+     * Все запросы обрабатываются по одному в потоке-диспетчере HttpServer.
+     */
+    DISPATCHER,
+    /**
+     * Пул из poolSize потоков; остальные запросы ждут в очереди.
+     */
+    BOUNDED_POOL,
+    /**
+     * Отдельный виртуальный поток на запрос (Java 21+). На JVM без виртуальных потоков - пул, как в
+     * BOUNDED_POOL: поток платформы на каждое из сотен одновременных соединений не создается.
+     */
+    THREAD_PER_REQUEST;
+
+    /**
+     * Очередь непринятых соединений HttpServer. При 0 JDK берет 50, и пик из сотен одновременных
+     * подключений получает сброс соединения раньше, чем дойдет до пула.
+     */
+    public static final int ACCEPT_BACKLOG = 1024;
+
+    /**
+     * Создание пула для HttpServer.setExecutor; null - обработка в потоке-диспетчере
+     */
+    public ExecutorService newExecutor(int poolSize) {
+        switch (this) {
+            case BOUNDED_POOL:
+                return Executors.newFixedThreadPool(poolSize);
+            case THREAD_PER_REQUEST:
+                return newThreadPerRequestExecutor(poolSize);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Проект собирается под Java 11, поэтому фабрика виртуальных потоков ищется через reflection.
+     * Без нее - пул из poolSize потоков, при poolSize не больше 0 - по числу процессоров.
+     */
+    private static ExecutorService newThreadPerRequestExecutor(int poolSize) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors());
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.example.server;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Хранилище KV-сервера с журналом упреждающей записи и снимком на диске.
+ * <pre>
+ * журнал kv.log: запись = длина int, CRC32 int, тело: номер long, операция byte, число пар int,
+ *     пары ключ-значение (строка = длина int + UTF-8, null = -1)
+ * снимок kv.snapshot: номер последней учтенной записи long, число пар int, пары
+ * </pre>
+ * Каждая операция сначала пишется в журнал, потом применяется в памяти. Каждые snapshotThreshold записей
+ * снимок переписывается целиком, а журнал очищается. При запуске загружается снимок, затем записи
+ * журнала с большим номером; недописанная или поврежденная последняя запись отбрасывается.
+ */
+public class FileKVStorage extends KVStorage {
+    public static final int DEFAULT_SNAPSHOT_THRESHOLD = 10_000;
+    private static final String SNAPSHOT_FILE = "kv.snapshot";
+    private static final String LOG_FILE = "kv.log";
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+
+    private static final byte PUT = 1;
+    private static final byte APPEND = 2;
+    private static final byte REMOVE = 3;
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final SyncPolicy syncPolicy;
+    private final int snapshotThreshold;
+    /**
+     * Все изменения идут под logLock: порядок записей в журнале совпадает с порядком применения.
+     */
+    private final Object logLock = new Object();
+    private final FileChannel log;
+    private long sequence;
+    private int recordsSinceSnapshot;
+
+    /**
+     * Политика сброса журнала на диск
+     */
+    public enum SyncPolicy {
+        /**
+         * FileChannel.force после каждой записи: подтвержденная операция переживет отключение питания.
+         */
+        ALWAYS,
+        /**
+         * Сброс оставлен операционной системе: операция переживет падение сервера, но не отключение питания.
+         */
+        OS
+    }
+
+    public FileKVStorage(File directory) throws IOException {
+        this(directory, SyncPolicy.ALWAYS, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+
+    /**
+     * @param snapshotThreshold количество записей в журнале, после которого снимок переписывается
+     */
+    public FileKVStorage(File directory, SyncPolicy syncPolicy, int snapshotThreshold) throws IOException {
+        Files.createDirectories(directory.toPath());
+        this.snapshotPath = directory.toPath().resolve(SNAPSHOT_FILE);
+        this.logPath = directory.toPath().resolve(LOG_FILE);
+        this.syncPolicy = syncPolicy;
+        this.snapshotThreshold = Math.max(snapshotThreshold, 1);
+        this.log = FileChannel.open(logPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    @Override
+    void put(String key, String value) {
+        synchronized (logLock) {
+            writeRecord(PUT, Map.of(key, value));
+            super.put(key, value);
+            afterRecord();
+        }
+    }
+
+    @Override
+    void append(String key, String value) {
+        synchronized (logLock) {
+            writeRecord(APPEND, Map.of(key, value));
+            super.append(key, value);
+            afterRecord();
+        }
+    }
+
+    @Override
+    void remove(String key) {
+        synchronized (logLock) {
+            writeRecord(REMOVE, Collections.singletonMap(key, null));
+            super.remove(key);
+            afterRecord();
+        }
+    }
+
+    /**
+     * Пакет пишется в журнал одной записью и восстанавливается целиком или не восстанавливается совсем
+     */
+    @Override
+    void putAll(Map<String, String> values) {
+        synchronized (logLock) {
+            writeRecord(PUT, values);
+            super.putAll(values);
+            afterRecord();
+        }
+    }
+
+    /**
+     * Сохранение снимка во временный файл с атомарной заменой старого и очистка журнала
+     */
+    public void snapshot() {
+        synchronized (logLock) {
+            Path temporary = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+            try (FileOutputStream fileOutputStream = new FileOutputStream(temporary.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOutputStream))) {
+                out.writeLong(sequence);
+                out.writeInt(size());
+                forEach((key, value) -> {
+                    try {
+                        writeString(out, key);
+                        writeString(out, value);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.flush();
+                fileOutputStream.getChannel().force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка записи снимка: " + temporary, e);
+            }
+            try {
+                Files.move(temporary, snapshotPath,
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                log.truncate(0);
+                log.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка очистки журнала: " + logPath, e);
+            }
+            recordsSinceSnapshot = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (logLock) {
+            try {
+                log.force(true);
+                log.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка закрытия журнала: " + logPath, e);
+            }
+        }
+    }
+
+    private void afterRecord() {
+        recordsSinceSnapshot++;
+        if (recordsSinceSnapshot >= snapshotThreshold) {
+            snapshot();
+        }
+    }
+
+    private void writeRecord(byte operation, Map<String, String> values) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeLong(sequence + 1);
+            out.writeByte(operation);
+            out.writeInt(values.size());
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue());
+            }
+            byte[] bytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length)
+                    .putInt(bytes.length)
+                    .putInt((int) crc.getValue())
+                    .put(bytes);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            if (syncPolicy == SyncPolicy.ALWAYS) {
+                log.force(false);
+            }
+            sequence++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка записи в журнал: " + logPath, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        long snapshotSequence = 0;
+        if (Files.exists(snapshotPath)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+                snapshotSequence = in.readLong();
+                final int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    super.put(readString(in), readString(in));
+                }
+            }
+        }
+        sequence = snapshotSequence;
+
+        long validLength = 0;
+        int replayed = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(log.position(0))));
+        while (true) {
+            byte[] bytes;
+            int checksum;
+            try {
+                final int length = in.readInt();
+                checksum = in.readInt();
+                if (length < 0 || validLength + RECORD_HEADER_SIZE + length > log.size()) {
+                    break;
+                }
+                bytes = new byte[length];
+                in.readFully(bytes);
+            } catch (EOFException e) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (applyRecord(new DataInputStream(new ByteArrayInputStream(bytes)), snapshotSequence)) {
+                replayed++;
+            }
+            validLength += RECORD_HEADER_SIZE + bytes.length;
+        }
+        if (validLength < log.size()) {
+            System.out.println("Журнал " + logPath + " обрезан до последней целой записи: " + validLength + " байт");
+            log.truncate(validLength);
+        }
+        log.position(validLength);
+        recordsSinceSnapshot = replayed;
+    }
+
+    /**
+     * Применение записи журнала, если она не учтена в снимке
+     */
+    private boolean applyRecord(DataInputStream in, long snapshotSequence) throws IOException {
+        final long recordSequence = in.readLong();
+        final byte operation = in.readByte();
+        final int count = in.readInt();
+        if (recordSequence <= snapshotSequence) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            final String key = readString(in);
+            final String value = readString(in);
+            switch (operation) {
+                case PUT:
+                    super.put(key, value);
+                    break;
+                case APPEND:
+                    super.append(key, value);
+                    break;
+                case REMOVE:
+                    super.remove(key);
+                    break;
+                default:
+                    throw new IOException("Неизвестная операция журнала: " + operation);
+            }
+        }
+        sequence = recordSequence;
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
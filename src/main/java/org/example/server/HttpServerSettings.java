@@ -0,0 +1,37 @@
+package org.example.server;
+
+/**
+ * Настройки HttpServer из JDK для пиков из сотен одновременных соединений.
+ * Это системные свойства JVM: JDK читает их один раз, при создании первого HttpServer, и они действуют
+ * на все серверы процесса, и на KVServer, и на HttpTaskServer. Поэтому серверы не ставят их сами,
+ * а приложение включает их явно при запуске, до создания первого сервера.
+ * Свойства, уже заданные при запуске JVM через -D, не меняются.
+ */
+public final class HttpServerSettings {
+    private static final String NODELAY = "sun.net.httpserver.nodelay";
+    private static final String MAX_IDLE_CONNECTIONS = "sun.net.httpserver.maxIdleConnections";
+
+    private HttpServerSettings() {
+    }
+
+    /**
+     * Включение настроек. Вызов после создания первого HttpServer в JVM уже ни на что не влияет.
+     * <ul>
+     * <li>TCP_NODELAY: пустой ответ уходит двумя пакетами, заголовки и конец chunked-тела, и без него
+     * второй пакет ждет подтверждения первого, около 40 мс на запрос.</li>
+     * <li>Простаивающих соединений до ExecutorMode.ACCEPT_BACKLOG: сверх 200 (значение JDK) HttpServer закрывает
+     * соединение сразу после ответа, а клиент из пула успевает отправить в него следующий запрос
+     * и получает сброс соединения.</li>
+     * </ul>
+     */
+    public static void applyForConcurrentClients() {
+        setIfAbsent(NODELAY, "true");
+        setIfAbsent(MAX_IDLE_CONNECTIONS, String.valueOf(ExecutorMode.ACCEPT_BACKLOG));
+    }
+
+    private static void setIfAbsent(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+}
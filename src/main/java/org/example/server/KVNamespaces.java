@@ -0,0 +1,244 @@
+package org.example.server;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пространства ключей KV-сервера: у каждого токена свои ключи, квота памяти и время последнего обращения.
+ * Ключ хранится в KVStorage с префиксом токена "{token}/". Если общий объем превышает емкость сервера,
+ * данные наименее давно использованных пространств удаляются целиком; пространство, в которое идет запись,
+ * не вытесняется. Токен после вытеснения остается действительным.
+ * Запись в одно пространство идет под его блокировкой, разные пространства пишутся параллельно.
+ * Порядок блокировок: пространство, затем this.
+ */
+class KVNamespaces {
+    static final long DEFAULT_QUOTA_BYTES = 16L << 20;
+    static final long DEFAULT_CAPACITY_BYTES = 256L << 20;
+    static final String DEBUG_TOKEN = "DEBUG";
+    private static final char SEPARATOR = '/';
+
+    private final KVStorage storage;
+    private final long quotaBytes;
+    private final long capacityBytes;
+    private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+    /**
+     * Пространства с данными в порядке обращений, от холодных к горячим. Под блокировкой this.
+     */
+    private final LinkedHashMap<String, Namespace> recentlyUsed = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    KVNamespaces(KVStorage storage, long quotaBytes, long capacityBytes) {
+        this.storage = storage;
+        this.quotaBytes = quotaBytes;
+        this.capacityBytes = capacityBytes;
+        namespaces.put(DEBUG_TOKEN, new Namespace(DEBUG_TOKEN));
+        storage.forEach((internalKey, value) -> {
+            final int separator = internalKey.indexOf(SEPARATOR);
+            if (separator < 0) {
+                return;
+            }
+            final String token = internalKey.substring(0, separator);
+            Namespace namespace = namespaces.computeIfAbsent(token, Namespace::new);
+            namespace.keys.add(internalKey.substring(separator + 1));
+            namespace.bytes += sizeOf(internalKey, value);
+        });
+        for (Namespace namespace : namespaces.values()) {
+            if (namespace.bytes > 0) {
+                recentlyUsed.put(namespace.token, namespace);
+                totalBytes += namespace.bytes;
+            }
+        }
+    }
+
+    /**
+     * Выдача нового токена с пустым пространством ключей
+     */
+    String register() {
+        String token;
+        do {
+            token = UUID.randomUUID().toString();
+        } while (namespaces.putIfAbsent(token, new Namespace(token)) != null);
+        return token;
+    }
+
+    boolean exists(String token) {
+        return token != null && namespaces.containsKey(token);
+    }
+
+    String get(String token, String key) {
+        touch(token);
+        return storage.get(internalKey(token, key));
+    }
+
+    /**
+     * Согласованное чтение нескольких ключей. Отсутствующих ключей в ответе нет.
+     */
+    Map<String, String> getAll(String token, Collection<String> keys) {
+        touch(token);
+        List<String> internalKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            internalKeys.add(internalKey(token, key));
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        storage.getAll(internalKeys).forEach((internalKey, value) ->
+                values.put(internalKey.substring(token.length() + 1), value));
+        return values;
+    }
+
+    /**
+     * @return false - запись превысит квоту пространства и не выполнена
+     */
+    boolean put(String token, String key, String value) {
+        return write(token, Map.of(key, value), false);
+    }
+
+    /**
+     * @return false - запись превысит квоту пространства и не выполнена
+     */
+    boolean append(String token, String key, String value) {
+        return write(token, Map.of(key, value), true);
+    }
+
+    /**
+     * Атомарное сохранение пакета
+     *
+     * @return false - пакет превысит квоту пространства и не сохранен
+     */
+    boolean putAll(String token, Map<String, String> values) {
+        return write(token, values, false);
+    }
+
+    void remove(String token, String key) {
+        Namespace namespace = namespaces.get(token);
+        final long released;
+        synchronized (namespace) {
+            final String internalKey = internalKey(token, key);
+            final String oldValue = storage.get(internalKey);
+            if (oldValue == null) {
+                return;
+            }
+            storage.remove(internalKey);
+            namespace.keys.remove(key);
+            released = sizeOf(internalKey, oldValue);
+            namespace.bytes -= released;
+        }
+        synchronized (this) {
+            totalBytes -= released;
+            if (namespace.bytes == 0) {
+                recentlyUsed.remove(token);
+            }
+        }
+    }
+
+    private boolean write(String token, Map<String, String> values, boolean append) {
+        Namespace namespace = namespaces.get(token);
+        final List<Namespace> victims;
+        synchronized (namespace) {
+            Map<String, String> internalValues = new LinkedHashMap<>();
+            long sizeDelta = 0;
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                final String internalKey = internalKey(token, entry.getKey());
+                final String oldValue = storage.get(internalKey);
+                if (oldValue == null) {
+                    sizeDelta += sizeOf(internalKey, entry.getValue());
+                } else if (append) {
+                    sizeDelta += sizeOf("", entry.getValue());
+                } else {
+                    sizeDelta += sizeOf("", entry.getValue()) - sizeOf("", oldValue);
+                }
+                internalValues.put(internalKey, entry.getValue());
+            }
+            if (namespace.bytes + sizeDelta > quotaBytes) {
+                System.out.println("Квота пространства " + token + " превышена: " + namespace.bytes + " + "
+                        + sizeDelta + " > " + quotaBytes + " байт");
+                return false;
+            }
+            if (append) {
+                Map.Entry<String, String> entry = internalValues.entrySet().iterator().next();
+                storage.append(entry.getKey(), entry.getValue());
+            } else if (internalValues.size() == 1) {
+                Map.Entry<String, String> entry = internalValues.entrySet().iterator().next();
+                storage.put(entry.getKey(), entry.getValue());
+            } else {
+                storage.putAll(internalValues);
+            }
+            namespace.keys.addAll(values.keySet());
+            namespace.bytes += sizeDelta;
+            victims = reserve(namespace, sizeDelta);
+        }
+        for (Namespace victim : victims) {
+            evict(victim);
+        }
+        return true;
+    }
+
+    /**
+     * Учет записанного объема и выбор холодных пространств, которые нужно вытеснить.
+     * Вызывается под блокировкой записываемого пространства, поэтому запись и ее учет в recentlyUsed видны evict вместе.
+     */
+    private synchronized List<Namespace> reserve(Namespace namespace, long delta) {
+        totalBytes += delta;
+        recentlyUsed.put(namespace.token, namespace);
+        List<Namespace> victims = new ArrayList<>();
+        long expectedBytes = totalBytes;
+        Iterator<Namespace> iterator = recentlyUsed.values().iterator();
+        while (expectedBytes > capacityBytes && iterator.hasNext()) {
+            Namespace candidate = iterator.next();
+            if (candidate != namespace) {
+                iterator.remove();
+                victims.add(candidate);
+                expectedBytes -= candidate.bytes;
+            }
+        }
+        return victims;
+    }
+
+    /**
+     * Удаление данных пространства. Если после выбора в жертвы в пространство успели записать, оно не вытесняется.
+     */
+    private void evict(Namespace victim) {
+        final long released;
+        synchronized (victim) {
+            synchronized (this) {
+                if (recentlyUsed.containsKey(victim.token)) {
+                    return;
+                }
+            }
+            for (String key : victim.keys) {
+                storage.remove(internalKey(victim.token, key));
+            }
+            victim.keys.clear();
+            released = victim.bytes;
+            victim.bytes = 0;
+        }
+        synchronized (this) {
+            totalBytes -= released;
+        }
+        System.out.println("Пространство " + victim.token + " вытеснено, освобождено " + released + " байт");
+    }
+
+    private synchronized void touch(String token) {
+        recentlyUsed.get(token);
+    }
+
+    private static String internalKey(String token, String key) {
+        return token + SEPARATOR + key;
+    }
+
+    /**
+     * Оценка занимаемой памяти: строки Java хранят символ в двух байтах
+     */
+    private static long sizeOf(String key, String value) {
+        return 2L * (key.length() + value.length());
+    }
+
+    private static final class Namespace {
+        private final String token;
+        private final Set<String> keys = new HashSet<>();
+        private volatile long bytes;
+
+        private Namespace(String token) {
+            this.token = token;
+        }
+    }
+}
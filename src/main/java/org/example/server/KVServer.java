@@ -1,32 +1,101 @@
 package org.example.server;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
 import java.net.InetSocketAddress;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class KVServer {
     public static final int PORT = 8080;
-    private final String apiToken;
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final Type BATCH_SAVE_TYPE = new TypeToken<LinkedHashMap<String, String>>() {
+    }.getType();
+    private static final Type BATCH_LOAD_TYPE = new TypeToken<ArrayList<String>>() {
+    }.getType();
+
     private final HttpServer server;
-    private final Map<String, String> data = new HashMap<>();
+    private final KVStorage storage;
+    private final KVNamespaces data;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final Gson gson = new Gson();
 
+    /**
+     * Сервер с пулом обработчиков по числу процессоров
+     */
     public KVServer() throws IOException {
-        apiToken = generateApiToken();
-        server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        this(new KVStorage());
+    }
+
+    /**
+     * Сервер с заданным хранилищем, например FileKVStorage. Хранилище закрывается вместе с сервером.
+     */
+    public KVServer(KVStorage storage) throws IOException {
+        this(storage, KVNamespaces.DEFAULT_QUOTA_BYTES, KVNamespaces.DEFAULT_CAPACITY_BYTES);
+    }
+
+    /**
+     * @param quotaBytes    предельный объем одного пространства ключей
+     * @param capacityBytes общий объем сервера, сверх которого вытесняются холодные пространства
+     */
+    public KVServer(KVStorage storage, long quotaBytes, long capacityBytes) throws IOException {
+        this(ExecutorMode.BOUNDED_POOL.newExecutor(DEFAULT_POOL_SIZE), true, storage, quotaBytes, capacityBytes);
+    }
+
+    /**
+     * Сервер с заданным режимом обработки запросов
+     *
+     * @param poolSize размер пула для режима BOUNDED_POOL
+     */
+    public KVServer(KVStorage storage, ExecutorMode executorMode, int poolSize) throws IOException {
+        this(executorMode.newExecutor(poolSize), true,
+                storage, KVNamespaces.DEFAULT_QUOTA_BYTES, KVNamespaces.DEFAULT_CAPACITY_BYTES);
+    }
+
+    /**
+     * Сервер с заданным пулом обработчиков. Пул не останавливается вместе с сервером.
+     */
+    public KVServer(ExecutorService executor) throws IOException {
+        this(executor, false, new KVStorage(), KVNamespaces.DEFAULT_QUOTA_BYTES, KVNamespaces.DEFAULT_CAPACITY_BYTES);
+    }
+
+    private KVServer(ExecutorService executor, boolean ownsExecutor, KVStorage storage,
+                     long quotaBytes, long capacityBytes) throws IOException {
+        this.storage = storage;
+        this.data = new KVNamespaces(storage, quotaBytes, capacityBytes);
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        server = HttpServer.create(new InetSocketAddress("localhost", PORT), ExecutorMode.ACCEPT_BACKLOG);
+        server.setExecutor(executor);
         server.createContext("/register", this::register);
         server.createContext("/save", this::save);
         server.createContext("/load", this::load);
+        server.createContext("/append", this::append);
+        server.createContext("/delete", this::delete);
+        server.createContext("/batch/save", this::batchSave);
+        server.createContext("/batch/load", this::batchLoad);
     }
 
     private void load(HttpExchange h) throws IOException {
         try {
             System.out.println("\n/load");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос не авторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
             if ("GET".equals(h.getRequestMethod())) {
                 String key = h.getRequestURI().getPath().substring("/load/".length());
                 if (key.isEmpty()) {
@@ -34,14 +103,14 @@ public class KVServer {
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                if (!data.containsKey(key)) {
+                String value = data.get(getApiToken(h), key);
+                if (value == null) {
                     System.out.println("Не могу достать данные для ключа " + key + ", данные отсутствуют");
                     h.sendResponseHeaders(404, 0);
                     return;
                 }
-                sendText(h, data.get(key));
+                sendText(h, value);
                 System.out.println("Значение для ключа " + key + " успешно отправлено в ответ на запрос.");
-                h.sendResponseHeaders(200, 0);
             } else {
                 System.out.println("/load ждёт GET-запрос, а получил " + h.getRequestMethod());
                 h.sendResponseHeaders(405, 0);
@@ -72,7 +141,10 @@ public class KVServer {
                     h.sendResponseHeaders(400, 0);
                     return;
                 }
-                data.put(key, value);
+                if (!data.put(getApiToken(h), key, value)) {
+                    h.sendResponseHeaders(413, 0);
+                    return;
+                }
                 System.out.println("Значение для ключа " + key + " успешно обновлено!");
                 h.sendResponseHeaders(200, 0);
             } else {
@@ -84,11 +156,163 @@ public class KVServer {
         }
     }
 
+    /**
+     * Дописывание тела запроса в конец значения. Если ключа нет, он создается.
+     */
+    private void append(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/append");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос не авторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("POST".equals(h.getRequestMethod())) {
+                String key = h.getRequestURI().getPath().substring("/append/".length());
+                if (key.isEmpty()) {
+                    System.out.println("Key для дописывания пустой. key указывается в пути: /append/{key}");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                String value = readText(h);
+                if (value.isEmpty()) {
+                    System.out.println("Value для дописывания пустой. value указывается в теле запроса");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                if (!data.append(getApiToken(h), key, value)) {
+                    h.sendResponseHeaders(413, 0);
+                    return;
+                }
+                System.out.println("Значение для ключа " + key + " успешно дописано!");
+                h.sendResponseHeaders(200, 0);
+            } else {
+                System.out.println("/append ждёт POST-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Удаление ключа. Удаление отсутствующего ключа не считается ошибкой.
+     */
+    private void delete(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/delete");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос не авторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("DELETE".equals(h.getRequestMethod())) {
+                String key = h.getRequestURI().getPath().substring("/delete/".length());
+                if (key.isEmpty()) {
+                    System.out.println("Key для удаления пустой. key указывается в пути: /delete/{key}");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                data.remove(getApiToken(h), key);
+                System.out.println("Значение для ключа " + key + " удалено");
+                h.sendResponseHeaders(200, 0);
+            } else {
+                System.out.println("/delete ждёт DELETE-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Сохранение нескольких ключей одним запросом. Тело - JSON-объект {key: value}.
+     * Все или ничего: если хотя бы одна пара некорректна, ни одно значение не сохраняется.
+     */
+    private void batchSave(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/batch/save");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос не авторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("POST".equals(h.getRequestMethod())) {
+                Map<String, String> values = readBatch(h, BATCH_SAVE_TYPE);
+                if (values == null || values.isEmpty()) {
+                    System.out.println("Тело для сохранения должно быть непустым JSON-объектом {key: value}");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                for (Map.Entry<String, String> entry : values.entrySet()) {
+                    if (entry.getKey().isEmpty() || entry.getValue() == null || entry.getValue().isEmpty()) {
+                        System.out.println("Пустой key или value для ключа '" + entry.getKey()
+                                + "', ничего не сохранено");
+                        h.sendResponseHeaders(400, 0);
+                        return;
+                    }
+                }
+                if (!data.putAll(getApiToken(h), values)) {
+                    h.sendResponseHeaders(413, 0);
+                    return;
+                }
+                System.out.println("Значения для ключей " + values.keySet() + " успешно обновлены!");
+                h.sendResponseHeaders(200, 0);
+            } else {
+                System.out.println("/batch/save ждёт POST-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    /**
+     * Получение нескольких ключей одним запросом. Тело - JSON-массив ключей,
+     * ответ - JSON-объект {key: value} только с найденными ключами.
+     */
+    private void batchLoad(HttpExchange h) throws IOException {
+        try {
+            System.out.println("\n/batch/load");
+            if (!hasAuth(h)) {
+                System.out.println("Запрос не авторизован, нужен параметр в query API_TOKEN со значением апи-ключа");
+                h.sendResponseHeaders(403, 0);
+                return;
+            }
+            if ("POST".equals(h.getRequestMethod())) {
+                List<String> keys = readBatch(h, BATCH_LOAD_TYPE);
+                if (keys == null || keys.isEmpty()) {
+                    System.out.println("Тело для получения должно быть непустым JSON-массивом ключей");
+                    h.sendResponseHeaders(400, 0);
+                    return;
+                }
+                Map<String, String> values = data.getAll(getApiToken(h), keys);
+                sendText(h, gson.toJson(values));
+                System.out.println("Значения для ключей " + values.keySet() + " успешно отправлены в ответ на запрос.");
+            } else {
+                System.out.println("/batch/load ждёт POST-запрос, а получил: " + h.getRequestMethod());
+                h.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            h.close();
+        }
+    }
+
+    private <T> T readBatch(HttpExchange h, Type type) throws IOException {
+        try {
+            return gson.fromJson(readText(h), type);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
     private void register(HttpExchange h) throws IOException {
         try {
             System.out.println("\n/register");
             if ("GET".equals(h.getRequestMethod())) {
+                String apiToken = data.register();
                 sendText(h, apiToken);
+                System.out.println("Выдан токен " + apiToken);
             } else {
                 System.out.println("/register ждёт GET-запрос, а получил " + h.getRequestMethod());
                 h.sendResponseHeaders(405, 0);
@@ -101,22 +325,37 @@ public class KVServer {
     public void start() {
         System.out.println("Запускаем сервер на порту " + PORT);
         System.out.println("Открой в браузере http://localhost:" + PORT + "/");
-        System.out.println("API_TOKEN: " + apiToken);
+        System.out.println("Токен для отладки: API_TOKEN=" + KVNamespaces.DEBUG_TOKEN);
         server.start();
     }
 
     public void stop() {
         server.stop(0);
+        if (ownsExecutor && executor != null) {
+            executor.shutdown();
+        }
+        storage.close();
         System.out.println("Сервер остановлен на порту " + PORT);
     }
 
-    private String generateApiToken() {
-        return "" + System.currentTimeMillis();
+    protected boolean hasAuth(HttpExchange h) {
+        return data.exists(getApiToken(h));
     }
 
-    protected boolean hasAuth(HttpExchange h) {
+    /**
+     * Значение параметра API_TOKEN из query, null - если параметра нет
+     */
+    protected String getApiToken(HttpExchange h) {
         String rawQuery = h.getRequestURI().getRawQuery();
-        return rawQuery != null && (rawQuery.contains("API_TOKEN=" + apiToken) || rawQuery.contains("API_TOKEN=DEBUG"));
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.startsWith("API_TOKEN=")) {
+                return parameter.substring("API_TOKEN=".length());
+            }
+        }
+        return null;
     }
 
     protected String readText(HttpExchange h) throws IOException {
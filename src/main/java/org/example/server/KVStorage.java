@@ -0,0 +1,104 @@
+package org.example.server;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Потокобезопасное хранилище KV-сервера.
+ * Операции с одним ключом атомарны за счет ConcurrentHashMap и идут параллельно.
+ * Пакетная запись берет блокировку на запись: остальные операции не видят пакет сохраненным частично.
+ * Данные хранятся только в памяти; сохранение на диск - в FileKVStorage.
+ */
+public class KVStorage implements Closeable {
+    private final Map<String, String> data = new ConcurrentHashMap<>();
+    private final ReadWriteLock batchLock = new ReentrantReadWriteLock();
+
+    String get(String key) {
+        return data.get(key);
+    }
+
+    void put(String key, String value) {
+        Lock lock = batchLock.readLock();
+        lock.lock();
+        try {
+            data.put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Дописывание значения в конец. Если ключа нет, он создается.
+     */
+    void append(String key, String value) {
+        Lock lock = batchLock.readLock();
+        lock.lock();
+        try {
+            data.merge(key, value, String::concat);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(String key) {
+        Lock lock = batchLock.readLock();
+        lock.lock();
+        try {
+            data.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Атомарное сохранение всех пар
+     */
+    void putAll(Map<String, String> values) {
+        Lock lock = batchLock.writeLock();
+        lock.lock();
+        try {
+            data.putAll(values);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Согласованное чтение нескольких ключей: пакетная запись не попадает в ответ частично
+     */
+    Map<String, String> getAll(Collection<String> keys) {
+        Map<String, String> values = new LinkedHashMap<>();
+        Lock lock = batchLock.readLock();
+        lock.lock();
+        try {
+            for (String key : keys) {
+                String value = data.get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return values;
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    void forEach(BiConsumer<String, String> action) {
+        data.forEach(action);
+    }
+
+    @Override
+    public void close() {
+    }
+}
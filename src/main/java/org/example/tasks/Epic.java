@@ -4,14 +4,32 @@ import org.example.manager.interfaces_and_utilities.TaskManager;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.LongConsumer;
 
 public class Epic extends Task {
 
-    private final List<Long> idsOfSubtasksEpic = new ArrayList<>();
-    private LocalDateTime endTime;
+    /**
+     * Id подзадач без упаковки в Long. Изменения идут под монитором менеджера, обход - без блокировок.
+     * Добавление дописывает id за опубликованным размером и затем увеличивает размер, массив растет удвоением.
+     * Удаление собирает новый массив. Поэтому читатель всегда видит согласованный префикс.
+     */
+    private volatile SubtaskIds idsOfSubtasksEpic = new SubtaskIds(new long[0], 0);
+
+    /**
+     * Сводка по подзадачам: счетчики статусов и мультимножества времени старта и окончания.
+     * Обновляется по одной подзадаче, поэтому статус и временные рамки эпика не требуют пересчета
+     * по всему списку. Время хранится секундами и наносекундами, как в задаче: объект RollupTime создается
+     * только для нового момента, а поиск идет по переиспользуемому ключу rollupProbe.
+     * Не сериализуется и после загрузки из json восстанавливается через includeInRollup.
+     */
+    private transient Map<Status, Integer> subtasksByStatus;
+    private transient NavigableMap<RollupTime, RollupTime> subtaskStartTimes;
+    private transient NavigableMap<RollupTime, RollupTime> subtaskEndTimes;
+    private transient RollupTime rollupProbe;
+    private transient long subtasksDurationSeconds;
+    private transient long subtasksDurationNanos;
+    private transient int subtasksInRollup;
 
     public Epic(String name, String description, TaskManager manager) {
         super(name, description);
@@ -21,8 +39,170 @@ public class Epic extends Task {
         super(name, description);
     }
 
+    /**
+     * Id подзадач эпика, список только для чтения
+     */
     public List<Long> getIdsOfSubtasksEpic() {
-        return idsOfSubtasksEpic;
+        final SubtaskIds subtaskIds = idsOfSubtasksEpic;
+        final int size = subtaskIds.size;
+        final long[] ids = subtaskIds.ids;
+        return new AbstractList<>() {
+            @Override
+            public Long get(int index) {
+                Objects.checkIndex(index, size);
+                return ids[index];
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Замена id подзадач при загрузке. Сводка по подзадачам не меняется.
+     */
+    public void setIdsOfSubtasksEpic(long[] ids) {
+        idsOfSubtasksEpic = new SubtaskIds(ids.clone(), ids.length);
+    }
+
+    /**
+     * Обход id подзадач эпика без упаковки
+     */
+    public void forEachSubtaskId(LongConsumer action) {
+        final SubtaskIds subtaskIds = idsOfSubtasksEpic;
+        final int size = subtaskIds.size;
+        final long[] ids = subtaskIds.ids;
+        for (int i = 0; i < size; i++) {
+            action.accept(ids[i]);
+        }
+    }
+
+    /**
+     * Добавление подзадачи в эпик
+     */
+    public void addSubtask(Subtask subtask) {
+        SubtaskIds subtaskIds = idsOfSubtasksEpic;
+        final int size = subtaskIds.size;
+        if (size == subtaskIds.ids.length) {
+            subtaskIds = new SubtaskIds(Arrays.copyOf(subtaskIds.ids, Math.max(4, size * 2)), size);
+            idsOfSubtasksEpic = subtaskIds;
+        }
+        subtaskIds.ids[size] = subtask.getId();
+        subtaskIds.size = size + 1;
+        includeInRollup(subtask);
+    }
+
+    /**
+     * Удаление подзадачи из эпика
+     */
+    public void removeSubtask(Subtask subtask) {
+        final SubtaskIds subtaskIds = idsOfSubtasksEpic;
+        final int size = subtaskIds.size;
+        final long[] ids = subtaskIds.ids;
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == subtask.getId()) {
+                final long[] removed = new long[ids.length];
+                System.arraycopy(ids, 0, removed, 0, i);
+                System.arraycopy(ids, i + 1, removed, i, size - i - 1);
+                idsOfSubtasksEpic = new SubtaskIds(removed, size - 1);
+                break;
+            }
+        }
+        excludeFromRollup(subtask);
+    }
+
+    /**
+     * Удаление всех подзадач эпика
+     */
+    public void clearSubtasks() {
+        idsOfSubtasksEpic = new SubtaskIds(new long[0], 0);
+        resetRollup();
+    }
+
+    /**
+     * Учет подзадачи в сводке. Вызывается после изменения статуса или времени подзадачи.
+     */
+    public void includeInRollup(Subtask subtask) {
+        initRollup();
+        subtasksInRollup++;
+        if (subtask.getStatus() != null) {
+            subtasksByStatus.merge(subtask.getStatus(), 1, Integer::sum);
+        }
+        if (subtask.endEpochSecond() != NO_TIME) {
+            increment(subtaskStartTimes, subtask.startEpochSecond(), subtask.startNano());
+            increment(subtaskEndTimes, subtask.endEpochSecond(), subtask.endNano());
+            subtasksDurationSeconds += subtask.endEpochSecond() - subtask.startEpochSecond();
+            subtasksDurationNanos += subtask.endNano() - subtask.startNano();
+        }
+    }
+
+    /**
+     * Исключение подзадачи из сводки. Вызывается до изменения статуса или времени подзадачи.
+     */
+    public void excludeFromRollup(Subtask subtask) {
+        initRollup();
+        subtasksInRollup--;
+        if (subtask.getStatus() != null) {
+            decrement(subtasksByStatus, subtask.getStatus());
+        }
+        if (subtask.endEpochSecond() != NO_TIME) {
+            decrement(subtaskStartTimes, subtask.startEpochSecond(), subtask.startNano());
+            decrement(subtaskEndTimes, subtask.endEpochSecond(), subtask.endNano());
+            subtasksDurationSeconds -= subtask.endEpochSecond() - subtask.startEpochSecond();
+            subtasksDurationNanos -= subtask.endNano() - subtask.startNano();
+        }
+    }
+
+    /**
+     * Статус по подзадачам: DONE, если все подзадачи выполнены, иначе IN_PROGRESS
+     */
+    public Status getRollupStatus() {
+        initRollup();
+        boolean isDone = subtasksByStatus.getOrDefault(Status.NEW, 0) == 0
+                && subtasksByStatus.getOrDefault(Status.IN_PROGRESS, 0) == 0;
+        return isDone ? Status.DONE : Status.IN_PROGRESS;
+    }
+
+    /**
+     * Самое раннее время старта подзадач, LocalDateTime.MAX если подзадач нет
+     */
+    public LocalDateTime getRollupStartTime() {
+        initRollup();
+        if (subtaskStartTimes.isEmpty()) {
+            return LocalDateTime.MAX;
+        }
+        final RollupTime first = subtaskStartTimes.firstKey();
+        return toDateTime(first.second, first.nano);
+    }
+
+    /**
+     * Самое позднее время окончания подзадач, LocalDateTime.MIN если подзадач нет
+     */
+    public LocalDateTime getRollupEndTime() {
+        initRollup();
+        if (subtaskEndTimes.isEmpty()) {
+            return LocalDateTime.MIN;
+        }
+        final RollupTime last = subtaskEndTimes.lastKey();
+        return toDateTime(last.second, last.nano);
+    }
+
+    /**
+     * Суммарная продолжительность подзадач
+     */
+    public Duration getRollupDuration() {
+        initRollup();
+        return Duration.ofSeconds(subtasksDurationSeconds, subtasksDurationNanos);
+    }
+
+    /**
+     * Есть ли в сводке подзадачи
+     */
+    public boolean hasSubtasksInRollup() {
+        initRollup();
+        return subtasksInRollup > 0;
     }
 
     public TypesTasks getType() {
@@ -31,11 +211,18 @@ public class Epic extends Task {
 
     @Override
     public LocalDateTime getEndTime() {
-        return endTime;
+        return super.getEndTime();
     }
 
     public void setEndTime(LocalDateTime endTime) {
-        this.endTime = endTime;
+        setEndTime(toEpochSecond(endTime), endTime == null ? 0 : endTime.getNano());
+    }
+
+    /**
+     * Окончание эпика задается по подзадачам, а не по старту и продолжительности
+     */
+    @Override
+    protected void updateEndTime() {
     }
 
     @Override
@@ -48,18 +235,61 @@ public class Epic extends Task {
         super.setDuration(duration);
     }
 
+    private void initRollup() {
+        if (subtasksByStatus == null) {
+            resetRollup();
+        }
+    }
+
+    private void resetRollup() {
+        subtasksByStatus = new EnumMap<>(Status.class);
+        subtaskStartTimes = new TreeMap<>();
+        subtaskEndTimes = new TreeMap<>();
+        rollupProbe = new RollupTime(NO_TIME, 0);
+        subtasksDurationSeconds = 0;
+        subtasksDurationNanos = 0;
+        subtasksInRollup = 0;
+    }
+
+    private static <K> void decrement(Map<K, Integer> counters, K key) {
+        counters.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private void increment(NavigableMap<RollupTime, RollupTime> times, long second, int nano) {
+        rollupProbe.second = second;
+        rollupProbe.nano = nano;
+        final RollupTime time = times.get(rollupProbe);
+        if (time != null) {
+            time.count++;
+        } else {
+            final RollupTime added = new RollupTime(second, nano);
+            added.count = 1;
+            times.put(added, added);
+        }
+    }
+
+    private void decrement(NavigableMap<RollupTime, RollupTime> times, long second, int nano) {
+        rollupProbe.second = second;
+        rollupProbe.nano = nano;
+        final RollupTime time = times.get(rollupProbe);
+        if (time != null && --time.count == 0) {
+            times.remove(time);
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         Epic epic = (Epic) o;
-        return Objects.equals(idsOfSubtasksEpic, epic.idsOfSubtasksEpic) && Objects.equals(endTime, epic.endTime);
+        return getIdsOfSubtasksEpic().equals(epic.getIdsOfSubtasksEpic())
+                && endEpochSecond() == epic.endEpochSecond() && endNano() == epic.endNano();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), idsOfSubtasksEpic, endTime);
+        return Objects.hash(super.hashCode(), getIdsOfSubtasksEpic().hashCode(), endEpochSecond(), endNano());
     }
 
     @Override
@@ -73,4 +303,38 @@ public class Epic extends Task {
                 getDuration() + "," +
                 getEndTime();
     }
-}
\ No newline at end of file
+
+    /**
+     * Массив id подзадач и число занятых ячеек. Ячейки до size не меняются, поэтому массив
+     * вместе с прочитанным size - неизменный снимок.
+     */
+    private static final class SubtaskIds {
+        private final long[] ids;
+        private volatile int size;
+
+        private SubtaskIds(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Момент сводки и число подзадач с этим моментом. Секунды и наносекунды ключа в карте не меняются,
+     * меняется только count.
+     */
+    private static final class RollupTime implements Comparable<RollupTime> {
+        private long second;
+        private int nano;
+        private int count;
+
+        private RollupTime(long second, int nano) {
+            this.second = second;
+            this.nano = nano;
+        }
+
+        @Override
+        public int compareTo(RollupTime other) {
+            return compareTime(second, nano, other.second, other.nano);
+        }
+    }
+}
@@ -3,20 +3,35 @@ package org.example.tasks;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.Objects;
 
+/**
+ * Задача. Время хранится примитивами, без объектов LocalDateTime и Duration: старт - секунды
+ * от 1970-01-01T00:00 без учета часового пояса и наносекунды, продолжительность - секунды и наносекунды.
+ * NO_TIME в секундах - время не задано. Время окончания хранится так же и пересчитывается в setStartTime
+ * и setDuration, поэтому сравнения времени в расписании идут по примитивам без создания объектов.
+ * Тип задачи не хранится, он определяется классом. В json задачи пишет TaskAdapterFactory.
+ * Менеджер меняет сохраненную задачу на месте, а читает ее без блокировок, поэтому изменяемые поля volatile:
+ * после возврата из updateTask новые значения видны в любом потоке, в том числе по ссылке, полученной раньше.
+ * Чтение во время обновления может застать часть полей старыми. Id задается до публикации задачи в менеджере.
+ */
 public class Task {
 
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd | HH:mm");
     private long id;
-    private TypesTasks type;
-    private String name;
-    private String description;
-    private Status status;
-    private LocalDateTime startTime;
-    private Duration duration;
-
+    private volatile String name;
+    private volatile String description;
+    private volatile Status status;
+    private transient volatile long startTime = NO_TIME;
+    private transient volatile int startNanos;
+    private transient volatile long duration = NO_TIME;
+    private transient volatile int durationNanos;
+    private transient volatile long endTime = NO_TIME;
+    private transient volatile int endNanos;
 
     public Task(long id, String name, String description) {
         this.name = name;
@@ -32,9 +47,8 @@ public class Task {
     public Task(String name, String description, String startDateTime, int hoursDuration, int minutesDuration) {
         this.name = name;
         this.description = description;
-        startTime = getStartTimeFromString(startDateTime);
-        duration = getDurationFromString(hoursDuration, minutesDuration);
-        getEndTime();
+        setStartTime(getStartTimeFromString(startDateTime));
+        setDuration(getDurationFromString(hoursDuration, minutesDuration));
     }
 
     /**
@@ -65,7 +79,7 @@ public class Task {
      * Получаем конец выполнения задачи по продолжительности
      */
     public LocalDateTime getEndTime() {
-        return startTime.plus(duration);
+        return toDateTime(endTime, endNanos);
     }
 
     public String getNameTask() {
@@ -104,24 +118,102 @@ public class Task {
         return TypesTasks.TASK;
     }
 
+    /**
+     * Ничего не делает: тип определяется классом задачи и не хранится. Оставлено для совместимости
+     * со старым кодом, который задавал тип вручную.
+     *
+     * @deprecated тип задачи нельзя изменить, используйте getType()
+     */
+    @Deprecated
     public void setType(TypesTasks type) {
-        this.type = type;
     }
 
     public Duration getDuration() {
-        return duration;
+        return duration == NO_TIME ? null : Duration.ofSeconds(duration, durationNanos);
     }
 
     public void setDuration(Duration duration) {
-        this.duration = duration;
+        this.duration = duration == null ? NO_TIME : duration.getSeconds();
+        this.durationNanos = duration == null ? 0 : duration.getNano();
+        updateEndTime();
     }
 
     public LocalDateTime getStartTime() {
-        return startTime;
+        return toDateTime(startTime, startNanos);
     }
 
     public void setStartTime(LocalDateTime startTime) {
-        this.startTime = startTime;
+        this.startTime = toEpochSecond(startTime);
+        this.startNanos = startTime == null ? 0 : startTime.getNano();
+        updateEndTime();
+    }
+
+    /**
+     * Время старта в секундах, NO_TIME если не задано
+     */
+    public long startEpochSecond() {
+        return startTime;
+    }
+
+    public int startNano() {
+        return startNanos;
+    }
+
+    /**
+     * Время окончания в секундах, NO_TIME если не задано
+     */
+    public long endEpochSecond() {
+        return endTime;
+    }
+
+    public int endNano() {
+        return endNanos;
+    }
+
+    /**
+     * Заканчивается ли задача позже момента (second, nano)
+     */
+    public boolean endsAfter(long second, int nano) {
+        return compareTime(endTime, endNanos, second, nano) > 0;
+    }
+
+    /**
+     * Пересчет времени окончания по старту и продолжительности
+     */
+    protected void updateEndTime() {
+        if (startTime == NO_TIME || duration == NO_TIME) {
+            setEndTime(NO_TIME, 0);
+            return;
+        }
+        final int nanos = startNanos + durationNanos;
+        setEndTime(startTime + duration + nanos / 1_000_000_000, nanos % 1_000_000_000);
+    }
+
+    protected void setEndTime(long second, int nanos) {
+        this.endTime = second;
+        this.endNanos = nanos;
+    }
+
+    /**
+     * Сравнение моментов, заданных секундами и наносекундами
+     */
+    public static int compareTime(long second, int nano, long otherSecond, int otherNano) {
+        final int bySecond = Long.compare(second, otherSecond);
+        return bySecond != 0 ? bySecond : Integer.compare(nano, otherNano);
+    }
+
+    /**
+     * Перевод времени в секунды, NO_TIME для null. Наносекунды хранятся отдельно.
+     */
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime == null ? NO_TIME : dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Перевод секунд и наносекунд во время, null для NO_TIME
+     */
+    public static LocalDateTime toDateTime(long epochSecond, int nanos) {
+        return epochSecond == NO_TIME ? null : LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
     }
 
     public long getEpicId() {
@@ -137,14 +229,16 @@ public class Task {
                 && Objects.equals(name, task.name)
                 && status == task.status
                 && Objects.equals(description, task.description)
-                && Objects.equals(startTime, task.startTime)
-                && Objects.equals(duration, task.duration)
+                && startTime == task.startTime
+                && startNanos == task.startNanos
+                && duration == task.duration
+                && durationNanos == task.durationNanos
                 && Objects.equals(FORMATTER, task.FORMATTER);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, status, description, id, startTime, duration, FORMATTER);
+        return Objects.hash(name, status, description, id, startTime, startNanos, duration, durationNanos, FORMATTER);
     }
 
     @Override
@@ -154,8 +248,8 @@ public class Task {
                 name + "," +
                 status + "," +
                 description + "," +
-                startTime + "," +
-                duration + "," +
+                getStartTime() + "," +
+                getDuration() + "," +
                 getEndTime();
     }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.example.Tests;
+
+import org.example.manager.interfaces_and_utilities.HistoryManager;
+import org.example.manager.interfaces_and_utilities.Managers;
+import org.example.manager.managers_types.ConcurrentHistoryManager;
+import org.example.manager.managers_types.InMemoryHistoryManager;
+import org.example.tasks.Task;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentHistoryManagerTest {
+    private static final int THREADS = 8;
+    private static final int TASKS_PER_THREAD = 100;
+
+    @Test
+    void shouldKeepLastViewOrderWithoutDuplicates() {
+        HistoryManager historyManager = new ConcurrentHistoryManager();
+        Task first = new Task(1, "Task 1", "DescriptionTask 1");
+        Task second = new Task(2, "Task 2", "DescriptionTask 2");
+        Task third = new Task(3, "Task 3", "DescriptionTask 3");
+
+        historyManager.add(first);
+        historyManager.add(second);
+        historyManager.add(third);
+        historyManager.add(first);
+        historyManager.remove(second.getId());
+
+        assertEquals(List.of(third, first), historyManager.getHistory(), "Неверный порядок истории");
+    }
+
+    @Test
+    void shouldKeepOnlyLastViewsWithinCapacity() {
+        HistoryManager historyManager = Managers.getDefaultHistory(TASKS_PER_THREAD);
+        for (long id = 0; id < 10L * TASKS_PER_THREAD; id++) {
+            historyManager.add(new Task(id, "Task " + id, "Description " + id));
+        }
+
+        List<Task> history = historyManager.getHistory();
+        assertEquals(TASKS_PER_THREAD, history.size(), "История превысила размер");
+        assertEquals(9L * TASKS_PER_THREAD, history.get(0).getId(), "Вытеснены не самые старые задачи");
+    }
+
+    @Test
+    void shouldMatchSerialHistoryAfterParallelViews() throws Exception {
+        HistoryManager historyManager = new ConcurrentHistoryManager();
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                futures.add(threads.submit(() -> view(historyManager, thread)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        List<Task> history = historyManager.getHistory();
+        assertEquals(THREADS * TASKS_PER_THREAD / 2, history.size(), "В истории дубликаты или потерянные задачи");
+        for (int thread = 0; thread < THREADS; thread++) {
+            HistoryManager serial = new InMemoryHistoryManager();
+            view(serial, thread);
+            List<Task> threadHistory = new ArrayList<>();
+            for (Task task : history) {
+                if (task.getId() / TASKS_PER_THREAD == thread) {
+                    threadHistory.add(task);
+                }
+            }
+            assertEquals(serial.getHistory(), threadHistory, "Порядок просмотров потока нарушен");
+        }
+    }
+
+    @Test
+    void shouldKeepOneEntryPerTaskUnderContendedViews() throws Exception {
+        HistoryManager historyManager = new ConcurrentHistoryManager();
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                futures.add(threads.submit(() -> {
+                    for (int j = 0; j < 10 * TASKS_PER_THREAD; j++) {
+                        final long id = (j + thread) % TASKS_PER_THREAD;
+                        historyManager.add(new Task(id, "Task " + id, "Description " + id));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (Task task : historyManager.getHistory()) {
+            assertTrue(ids.add(task.getId()), "В истории дубликаты");
+        }
+        assertEquals(TASKS_PER_THREAD, ids.size(), "В истории потеряны задачи");
+    }
+
+    /**
+     * Просмотры одного потока: свои задачи по кругу, затем удаление задач с нечетными id
+     */
+    private static void view(HistoryManager historyManager, int thread) {
+        final long firstId = (long) thread * TASKS_PER_THREAD;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                final long id = firstId + (i * 7 + round) % TASKS_PER_THREAD;
+                historyManager.add(new Task(id, "Task " + id, "Description " + id));
+            }
+        }
+        for (long id = firstId + 1; id < firstId + TASKS_PER_THREAD; id += 2) {
+            historyManager.remove(id);
+        }
+    }
+}
@@ -8,7 +8,15 @@ import org.example.tasks.Subtask;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 class EpicTest {
+    private static final int SUBTASKS = 10_000;
 
     private final TaskManager manager = Managers.getDefaultTaskManager();
 
@@ -75,4 +83,100 @@ class EpicTest {
         manager.setStatusForSubtask(subtask2, Status.IN_PROGRESS);
         Assertions.assertEquals(Status.IN_PROGRESS, epic.getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldEpicStatusWhenNotDoneSubtaskIsDeleted() {
+        Epic epic = new Epic("Epic 1", "DescriptionEpic 1", manager);
+        manager.createTask(epic);
+        Subtask subtask = new Subtask("Subtask 1", "DescriptionSubtask 1", epic.getId());
+        manager.createTask(subtask);
+        Subtask subtask2 = new Subtask("Subtask 2", "DescriptionSubtask 2", epic.getId());
+        manager.createTask(subtask2);
+        manager.setStatusForSubtask(subtask2, Status.DONE);
+        manager.deleteSubtaskForID(subtask.getId());
+        Assertions.assertEquals(Status.DONE, epic.getStatus());
+    }
+
+    @Test
+    public void shouldEpicTimeFollowRescheduledSubtasks() {
+        Epic epic = new Epic("Epic 1", "DescriptionEpic 1", manager);
+        manager.createTask(epic);
+        Subtask subtask = new Subtask("Subtask 1", "DescriptionSubtask 1", epic.getId());
+        manager.createTask(subtask);
+        Subtask subtask2 = new Subtask("Subtask 2", "DescriptionSubtask 2", epic.getId());
+        manager.createTask(subtask2);
+
+        Subtask newSubtask = new Subtask("Subtask 1", "DescriptionSubtask 1",
+                "2022-08-23 | 20:30", 1, 0, epic.getId());
+        newSubtask.setId(subtask.getId());
+        manager.updateSubtask(newSubtask);
+        Subtask newSubtask2 = new Subtask("Subtask 2", "DescriptionSubtask 2",
+                "2022-08-28 | 09:00", 1, 30, epic.getId());
+        newSubtask2.setId(subtask2.getId());
+        manager.updateSubtask(newSubtask2);
+
+        Assertions.assertEquals(LocalDateTime.of(2022, 8, 23, 20, 30), epic.getStartTime());
+        Assertions.assertEquals(LocalDateTime.of(2022, 8, 28, 10, 30), epic.getEndTime());
+        Assertions.assertEquals(Duration.ofMinutes(150), epic.getDuration());
+    }
+
+    @Test
+    public void shouldKeepRollupTimeWhileSubtasksShareIt() {
+        Epic epic = new Epic("Epic 1", "DescriptionEpic 1");
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0, 0, 250_000_000);
+        Subtask first = new Subtask("Subtask 1", "DescriptionSubtask 1", 0);
+        first.setId(1);
+        first.setStartTime(start);
+        first.setDuration(Duration.ofMinutes(30));
+        Subtask second = new Subtask("Subtask 2", "DescriptionSubtask 2", 0);
+        second.setId(2);
+        second.setStartTime(start);
+        second.setDuration(Duration.ofSeconds(90, 900_000_000));
+        epic.addSubtask(first);
+        epic.addSubtask(second);
+
+        epic.removeSubtask(second);
+        Assertions.assertEquals(start, epic.getRollupStartTime(), "Общее время старта удалено вместе с подзадачей");
+        Assertions.assertEquals(start.plusMinutes(30), epic.getRollupEndTime(), "Неверное время окончания");
+        Assertions.assertEquals(Duration.ofMinutes(30), epic.getRollupDuration(), "Неверная продолжительность");
+
+        epic.removeSubtask(first);
+        Assertions.assertEquals(LocalDateTime.MAX, epic.getRollupStartTime(), "Время старта без подзадач");
+        Assertions.assertEquals(Duration.ZERO, epic.getRollupDuration(), "Продолжительность без подзадач");
+    }
+
+    @Test
+    public void shouldReadConsistentSubtaskIdsWhileAdding() throws Exception {
+        Epic epic = new Epic("Epic 1", "DescriptionEpic 1");
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<?> reader = thread.submit(() -> {
+                while (writing.get()) {
+                    long previousId = 0;
+                    for (long id : epic.getIdsOfSubtasksEpic()) {
+                        Assertions.assertTrue(id > previousId, "Прочитан неполный список подзадач");
+                        previousId = id;
+                    }
+                }
+            });
+            for (long id = 1; id <= SUBTASKS; id++) {
+                Subtask subtask = new Subtask("Subtask " + id, "DescriptionSubtask " + id, 0);
+                subtask.setId(id);
+                epic.addSubtask(subtask);
+                if (id % 3 == 0) {
+                    Subtask removed = new Subtask("Subtask", "DescriptionSubtask", 0);
+                    removed.setId(id - 1);
+                    epic.removeSubtask(removed);
+                }
+            }
+            writing.set(false);
+            reader.get();
+        } finally {
+            thread.shutdownNow();
+        }
+
+        Assertions.assertEquals(SUBTASKS - SUBTASKS / 3, epic.getIdsOfSubtasksEpic().size(),
+                "Неверное количество подзадач");
+    }
+}
@@ -1,9 +1,11 @@
 package org.example.Tests;
 
+import org.example.manager.exceptions.ManagerSaveException;
 import org.example.manager.interfaces_and_utilities.TaskManager;
 import org.example.manager.managers_types.FileBackedTasksManager;
 import org.example.manager.managers_types.InMemoryTaskManager;
 import org.example.tasks.Epic;
+import org.example.tasks.Status;
 import org.example.tasks.Subtask;
 import org.example.tasks.Task;
 import org.junit.jupiter.api.Assertions;
@@ -11,8 +13,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 class FileBackedTasksManagerTest extends TaskManagerTest {
+    private static final int VIEWED_TASKS = 2_000;
     private FileBackedTasksManager fileBackedTasksManager;
     private InMemoryTaskManager inMemoryTaskManager;
     File file;
@@ -161,6 +173,270 @@ class FileBackedTasksManagerTest extends TaskManagerTest {
                 "Список задач в истории после выгрузки не совпадает");
     }
 
+    @Test
+    void shouldLoadFromSnapshotAndJournal() throws IOException {
+        File journalFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(journalFile, 4);
+        manager.createTask(task1);
+        manager.createTask(epic1);
+        Subtask subtask1 = new Subtask("Subtask 1", "DescriptionSubtask 1", epic1.getId());
+        Subtask subtask2 = new Subtask("Subtask 2", "DescriptionSubtask 2", epic1.getId());
+        manager.createTask(subtask1);
+        manager.createTask(subtask2);
+        manager.setStatusForSubtask(subtask1, Status.DONE);
+        manager.getSubtaskByID(subtask2.getId());
+        manager.getTaskByID(task1.getId());
+        manager.deleteSubtaskForID(subtask2.getId());
+        manager.getEpicByID(epic1.getId());
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(journalFile);
+
+        Assertions.assertEquals(manager.getListOfTask(), loaded.getListOfTask(), "Задачи не восстановлены");
+        Assertions.assertEquals(manager.getListOfEpic(), loaded.getListOfEpic(), "Эпики не восстановлены");
+        Assertions.assertEquals(manager.getListOfSubtask(), loaded.getListOfSubtask(), "Подзадачи не восстановлены");
+        Assertions.assertEquals(manager.getHistoryManager().getHistory(), loaded.getHistoryManager().getHistory(),
+                "История не восстановлена");
+    }
+
+    @Test
+    void shouldRecordViewsWithoutManagerMonitor() throws Exception {
+        File viewFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(viewFile);
+        manager.createTask(task1);
+        manager.createTask(task2);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            synchronized (manager) {
+                locked.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        writer.start();
+        try {
+            locked.await();
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                manager.getTaskByID(task2.getId());
+                manager.getTaskByID(task1.getId());
+            }, "Просмотр ждет монитор менеджера");
+        } finally {
+            released.countDown();
+            writer.join();
+        }
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(viewFile);
+        Assertions.assertEquals(List.of(task2, task1), loaded.getHistoryManager().getHistory(),
+                "Просмотры не записаны в журнал");
+    }
+
+    @Test
+    void shouldJournalViewsAfterTheirTasks() throws Exception {
+        File viewFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(viewFile, Integer.MAX_VALUE);
+        manager.createTask(new Task("Task 0", "DescriptionTask 0"));
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread viewer = new Thread(() -> {
+            while (writing.get()) {
+                manager.getTaskByID(manager.getCreatedID());
+            }
+        });
+        viewer.start();
+        try {
+            for (int i = 1; i < VIEWED_TASKS; i++) {
+                manager.createTask(new Task("Task " + i, "DescriptionTask " + i));
+            }
+        } finally {
+            writing.set(false);
+            viewer.join();
+        }
+        manager.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(viewFile);
+        Assertions.assertEquals(manager.getHistoryManager().getHistory(), loaded.getHistoryManager().getHistory(),
+                "Просмотр записан в журнал раньше задачи");
+    }
+
+    @Test
+    void shouldKeepSnapshotAndJournalWhenCompactionFails() throws IOException {
+        File snapshotFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(snapshotFile);
+        manager.createTask(task1);
+        manager.compact();
+        manager.createTask(epic1);
+        File blocked = new File(snapshotFile.getPath() + ".tmp");
+        Assertions.assertTrue(blocked.mkdir(), "Не удалось занять временный файл снимка");
+
+        try {
+            Assertions.assertThrows(ManagerSaveException.class, manager::compact, "Ошибка записи снимка не передана");
+        } finally {
+            blocked.delete();
+        }
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(snapshotFile);
+        Assertions.assertEquals(manager.getListOfTask(), loaded.getListOfTask(), "Снимок испорчен");
+        Assertions.assertEquals(manager.getListOfEpic(), loaded.getListOfEpic(), "Журнал очищен без снимка");
+    }
+
+    @Test
+    void shouldWriteJournalInBatchesWithGroupCommit() throws IOException {
+        File batchFile = File.createTempFile("tasks", ".csv");
+        File journalFile = new File(batchFile.getPath() + ".journal");
+        try (FileBackedTasksManager manager = new FileBackedTasksManager(batchFile)) {
+            manager.setPersistenceMode(FileBackedTasksManager.PersistenceMode.GROUP_COMMIT, 1000, 60_000);
+            manager.createTask(epic1);
+            for (int i = 0; i < 500; i++) {
+                manager.createTask(new Subtask("Subtask " + i, "DescriptionSubtask " + i, epic1.getId()));
+            }
+
+            Assertions.assertEquals(0, journalFile.length(), "Записи сброшены на диск до flush()");
+
+            manager.flush();
+            FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(batchFile);
+
+            Assertions.assertEquals(manager.getListOfSubtask().size(), loaded.getListOfSubtask().size(),
+                    "Подзадачи не восстановлены после flush()");
+            Assertions.assertEquals(manager.getListOfEpic(), loaded.getListOfEpic(),
+                    "Эпики не восстановлены после flush()");
+        }
+    }
+
+    @Test
+    void shouldReportFailedDelayedFlush() throws IOException, InterruptedException {
+        File batchFile = File.createTempFile("tasks", ".csv");
+        File journalFile = new File(batchFile.getPath() + ".journal");
+        FileBackedTasksManager manager = new FileBackedTasksManager(batchFile);
+        manager.createTask(task1);
+        manager.close();
+        Assertions.assertTrue(journalFile.delete() && journalFile.mkdir(), "Не удалось занять файл журнала");
+        try {
+            manager.setPersistenceMode(FileBackedTasksManager.PersistenceMode.GROUP_COMMIT, 1000, 10);
+            manager.createTask(epic1);
+
+            ManagerSaveException error = null;
+            for (int i = 0; i < 100 && error == null; i++) {
+                Thread.sleep(50);
+                try {
+                    manager.createTask(new Task("Task " + i, "DescriptionTask " + i));
+                } catch (ManagerSaveException e) {
+                    error = e;
+                }
+            }
+            Assertions.assertNotNull(error, "Ошибка отложенного сброса потеряна");
+            Assertions.assertThrows(ManagerSaveException.class, manager::close, "Несброшенные записи потеряны");
+        } finally {
+            journalFile.delete();
+        }
+    }
+
+    @Test
+    void shouldLoadFromBinarySnapshotAndConvertToCsv() throws IOException {
+        File binaryFile = File.createTempFile("tasks", ".bin");
+        File csvFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(binaryFile);
+        manager.setSnapshotFormat(FileBackedTasksManager.SnapshotFormat.BINARY);
+        manager.createTasks(task1);
+        manager.createTask(epic1);
+        manager.createTask(new Subtask("Subtask 1", "DescriptionSubtask 1", epic1.getId()));
+        manager.getEpicByID(epic1.getId());
+        manager.getTaskByID(task1.getId());
+        manager.compact();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(binaryFile);
+        FileBackedTasksManager.convert(binaryFile, csvFile, FileBackedTasksManager.SnapshotFormat.CSV);
+        FileBackedTasksManager converted = FileBackedTasksManager.loadFromFile(csvFile);
+
+        for (FileBackedTasksManager restored : List.of(loaded, converted)) {
+            Assertions.assertEquals(manager.getListOfTask(), restored.getListOfTask(), "Задачи не восстановлены");
+            Assertions.assertEquals(manager.getListOfEpic(), restored.getListOfEpic(), "Эпики не восстановлены");
+            Assertions.assertEquals(manager.getHistoryManager().getHistory(), restored.getHistoryManager().getHistory(),
+                    "История не восстановлена");
+        }
+        Assertions.assertEquals(manager.getListOfSubtask(), loaded.getListOfSubtask(), "Подзадачи не восстановлены");
+    }
+
+    @Test
+    void shouldLoadSameTasksFromBothSnapshotFormats() throws IOException {
+        File csvFile = File.createTempFile("tasks", ".csv");
+        File binaryFile = File.createTempFile("tasks", ".bin");
+        FileBackedTasksManager manager = new FileBackedTasksManager(csvFile);
+        manager.setPersistenceMode(FileBackedTasksManager.PersistenceMode.GROUP_COMMIT, Integer.MAX_VALUE, 60_000);
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        for (int i = 0; i < 1_000; i++) {
+            Task task = new Task("Task " + i, "DescriptionTask " + i);
+            task.setStartTime(start.plusHours(i));
+            task.setDuration(Duration.ofMinutes(30));
+            manager.createTasks(task);
+        }
+        manager.compact();
+        FileBackedTasksManager.convert(csvFile, binaryFile, FileBackedTasksManager.SnapshotFormat.BINARY);
+
+        FileBackedTasksManager fromCsv = FileBackedTasksManager.loadFromFile(csvFile);
+        FileBackedTasksManager fromBinary = FileBackedTasksManager.loadFromFile(binaryFile);
+
+        Assertions.assertEquals(manager.getPrioritizedTasks(), fromCsv.getPrioritizedTasks(),
+                "Задачи не восстановлены из CSV");
+        Assertions.assertEquals(fromCsv.getPrioritizedTasks(), fromBinary.getPrioritizedTasks(),
+                "Форматы загружаются по-разному");
+    }
+
+    @Test
+    void shouldKeepWritesAfterTornJournalRecord() throws IOException {
+        File tornFile = File.createTempFile("tasks", ".csv");
+        Path journal = Path.of(tornFile.getPath() + ".journal");
+        FileBackedTasksManager manager = new FileBackedTasksManager(tornFile);
+        manager.createTask(task1);
+        manager.createTask(task2);
+        manager.close();
+        Files.writeString(journal, "PUT,3,TASK,Tor", StandardOpenOption.APPEND);
+
+        FileBackedTasksManager restarted = FileBackedTasksManager.loadFromFile(tornFile);
+        Assertions.assertEquals(2, restarted.getListOfTask().size(), "Оборванная запись применена");
+        restarted.createTask(new Task("Task C", "DescriptionTask C"));
+        restarted.createTask(new Task("Task D", "DescriptionTask D"));
+        restarted.close();
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(tornFile);
+        Assertions.assertEquals(restarted.getListOfTask(), loaded.getListOfTask(),
+                "Записи после перезапуска потеряны");
+    }
+
+    @Test
+    void shouldNotApplyRecordWithoutLineBreak() throws IOException {
+        File tornFile = File.createTempFile("tasks", ".csv");
+        Path journal = Path.of(tornFile.getPath() + ".journal");
+        FileBackedTasksManager manager = new FileBackedTasksManager(tornFile);
+        manager.createTask(task1);
+        manager.close();
+        Files.writeString(journal, "VIEW," + task1.getId(), StandardOpenOption.APPEND);
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(tornFile);
+
+        Assertions.assertTrue(loaded.getHistoryManager().getHistory().isEmpty(),
+                "Запись без перевода строки применена");
+        Assertions.assertEquals(0, Files.size(journal), "Журнал с оборванной записью не свернут");
+    }
+
+    @Test
+    void shouldLoadQuotedFieldsFromSnapshotAndJournal() throws IOException {
+        File quotedFile = File.createTempFile("tasks", ".csv");
+        FileBackedTasksManager manager = new FileBackedTasksManager(quotedFile);
+        Task quoted = new Task("Task, \"first\"", "Line 1,\nLine 2 \"quoted\"");
+        manager.createTask(quoted);
+        manager.compact();
+        Task journaled = new Task("Task 2", "Description, with comma");
+        manager.createTask(journaled);
+
+        FileBackedTasksManager loaded = FileBackedTasksManager.loadFromFile(quotedFile);
+
+        Assertions.assertEquals(manager.getListOfTask(), loaded.getListOfTask(), "Поля в кавычках не восстановлены");
+        Assertions.assertEquals("Line 1,\nLine 2 \"quoted\"", loaded.getTaskByID(quoted.getId()).getDescription(),
+                "Описание с переводом строки прочитано неверно");
+    }
+
     @Override
     TaskManager createTaskManager() {
         File file = new File("file.csv");
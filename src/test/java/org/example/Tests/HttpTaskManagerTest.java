@@ -2,29 +2,56 @@ package org.example.Tests;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.example.manager.exceptions.ManagerSaveException;
+import org.example.manager.http.HttpTaskManager;
 import org.example.manager.http.HttpTaskServer;
+import org.example.manager.http.KVTaskClient;
 import org.example.manager.interfaces_and_utilities.Managers;
 import org.example.manager.interfaces_and_utilities.TaskManager;
+import org.example.manager.managers_types.InMemoryTaskManager;
+import org.example.server.ExecutorMode;
+import org.example.server.HttpServerSettings;
 import org.example.server.KVServer;
 import org.example.tasks.Epic;
+import org.example.tasks.Status;
 import org.example.tasks.Subtask;
 import org.example.tasks.Task;
+import org.example.tasks.TypesTasks;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.*;
 
 class HttpTaskManagerTest {
+    private static final int HISTORY_SIZE = 600;
+    private static final int STREAM_SIZE = 10_000;
+    private static final int CONNECTIONS = 1000;
+    private static final int COLD_START_SIZE = 2_000;
+
     KVServer server;
     TaskManager taskManager;
     Task task;
@@ -32,6 +59,11 @@ class HttpTaskManagerTest {
     Subtask subtask;
     Gson gson;
 
+    @BeforeAll
+    static void applyServerSettings() {
+        HttpServerSettings.applyForConcurrentClients();
+    }
+
     @BeforeEach
     void setUp() throws IOException {
         server = Managers.getDefaultKVServer();
@@ -508,6 +540,55 @@ class HttpTaskManagerTest {
         httpTaskServer.stop();
     }
 
+    @Test
+    void getHistoryByPages() throws IOException, InterruptedException {
+        HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager);
+        httpTaskServer.start();
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            taskManager.getTaskByID(taskManager.createTask(new Task("Task " + i, "Description " + i)));
+        }
+        List<Long> expected = new ArrayList<>();
+        for (Task viewed : taskManager.getHistoryManager().getHistory()) {
+            expected.add(viewed.getId());
+        }
+
+        HttpClient client = HttpClient.newHttpClient();
+        Type taskType = new TypeToken<ArrayList<Task>>() {
+        }.getType();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8079/tasks/history")).GET().build();
+        List<Task> history = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(), taskType);
+        request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:8079/tasks/history?from=250&limit=20")).GET().build();
+        List<Task> page = gson.fromJson(client.send(request, HttpResponse.BodyHandlers.ofString()).body(), taskType);
+
+        assertEquals(expected, history.stream().map(Task::getId).collect(Collectors.toList()),
+                "История отправлена не полностью");
+        assertEquals(expected.subList(250, 270), page.stream().map(Task::getId).collect(Collectors.toList()),
+                "Неверная страница истории");
+
+        httpTaskServer.stop();
+    }
+
+    @Test
+    void shouldRejectInvalidPageParameters() throws IOException, InterruptedException {
+        HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager);
+        httpTaskServer.start();
+        try {
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            for (String path : List.of("history?from=abc", "history?limit=-1", "?from=-5", "?limit=x")) {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8079/tasks/" + path))
+                        .timeout(Duration.ofSeconds(5)).GET().build();
+
+                assertEquals(400, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode(),
+                        "Неверный параметр принят: " + path);
+            }
+        } finally {
+            httpTaskServer.stop();
+        }
+    }
+
     @Test
     void getPrioritizedListAllTasks() throws IOException, InterruptedException {
         HttpTaskServer httpTaskServer = new HttpTaskServer(taskManager);
@@ -529,4 +610,206 @@ class HttpTaskManagerTest {
 
         httpTaskServer.stop();
     }
-}
\ No newline at end of file
+
+    /**
+     * Список задач отдается частями, без content-length, и приходит целиком
+     */
+    @Test
+    void shouldStreamTaskListInChunks() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        for (int i = 0; i < STREAM_SIZE; i++) {
+            Task streamed = new Task("Task " + i, "Description " + i);
+            streamed.setStartTime(start.plusMinutes(30L * i));
+            streamed.setDuration(Duration.ofMinutes(20));
+            manager.createTasks(streamed);
+        }
+        HttpTaskServer httpTaskServer = new HttpTaskServer(manager);
+        httpTaskServer.start();
+        try {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:8079/tasks/task")).GET().build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.headers().firstValue("content-length").isEmpty(), "Ответ не частями");
+
+            List<Task> received = new ArrayList<>();
+            try (JsonReader reader = new JsonReader(new InputStreamReader(response.body(), UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    received.add(gson.fromJson(reader, Task.class));
+                }
+                reader.endArray();
+            }
+            assertEquals(manager.getListOfTask(), received, "Получены не все задачи");
+        } finally {
+            httpTaskServer.stop();
+        }
+    }
+
+    @Test
+    void shouldServeThousandConcurrentConnectionsWithThreadPerRequest() throws IOException {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        HttpTaskServer httpTaskServer = new HttpTaskServer(manager, ExecutorMode.THREAD_PER_REQUEST, 0);
+        httpTaskServer.start();
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                HttpRequest request = HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:8079/tasks/task"))
+                        .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(new Task("Task " + i, "Description " + i))))
+                        .build();
+                requests.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+
+            for (CompletableFuture<HttpResponse<String>> request : requests) {
+                assertEquals(200, request.join().statusCode(), "Запрос не обработан");
+            }
+            List<Task> tasks = manager.getListOfTask();
+            assertEquals(CONNECTIONS, tasks.size(), "Созданы не все задачи");
+            assertEquals(CONNECTIONS, tasks.stream().map(Task::getId).distinct().count(), "id задач повторяются");
+        } finally {
+            httpTaskServer.stop();
+        }
+    }
+
+    @Test
+    void putAndLoadAsyncWithSharedClient() {
+        KVTaskClient client = new KVTaskClient("http://localhost:" + KVServer.PORT + "/");
+
+        CompletableFuture.allOf(
+                client.putAsync("first", "value 1"),
+                client.putAsync("second", "value 2")).join();
+
+        assertEquals("value 1", client.loadAsync("first").join(), "Значение не сохранено");
+        assertEquals("value 2", client.load("second"), "Значение не сохранено");
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> client.loadAsync("missing").join());
+        assertTrue(exception.getCause() instanceof ManagerSaveException, "Ошибка сервера не передана");
+    }
+
+    @Test
+    void shouldSendOnlyChangedRecordAndLoadFromSnapshotAndJournal() {
+        String url = "http://localhost:" + KVServer.PORT + "/";
+        String apiToken = ((HttpTaskManager) taskManager).getApiToken();
+        KVTaskClient client = new KVTaskClient(url, apiToken);
+        String journalKey = "journal." + client.load("version");
+        String journalBefore = client.load(journalKey);
+        Task newTask = new Task("taskT1.1", "DescriptionT1", "2022-08-27 | 10:00", 1, 30);
+        newTask.setId(task.getId());
+
+        taskManager.updateTask(newTask);
+
+        String delta = client.load(journalKey).substring(journalBefore.length());
+        assertEquals(1, delta.lines().count(), "На сервер отправлена не одна запись");
+        assertTrue(delta.contains("taskT1.1"), "Изменение не отправлено на сервер");
+
+        HttpTaskManager loaded = new HttpTaskManager(url, apiToken);
+        loaded.load();
+        assertEquals(taskManager.getListOfTask(), loaded.getListOfTask(), "Задачи не восстановлены");
+        assertEquals(taskManager.getListOfEpic(), loaded.getListOfEpic(), "Эпики не восстановлены");
+        assertEquals(taskManager.getListOfSubtask(), loaded.getListOfSubtask(), "Подзадачи не восстановлены");
+    }
+
+    @Test
+    void shouldRestoreHistoryFromSnapshot() {
+        HttpTaskManager manager = (HttpTaskManager) taskManager;
+        manager.getSubtaskByID(subtask.getId());
+        manager.getTaskByID(task.getId());
+        manager.getEpicByID(epic.getId());
+        manager.compact();
+
+        HttpTaskManager loaded = new HttpTaskManager("http://localhost:" + KVServer.PORT + "/", manager.getApiToken());
+        loaded.load();
+
+        assertEquals(List.of(subtask, task, epic), loaded.getHistoryManager().getHistory(), "История не восстановлена");
+        assertEquals(taskManager.getListOfEpic(), loaded.getListOfEpic(), "Эпики не восстановлены");
+    }
+
+    @Test
+    void shouldLoadSnapshotOfPreviousFormat() {
+        String url = "http://localhost:" + KVServer.PORT + "/";
+        KVTaskClient client = new KVTaskClient(url);
+        Map<String, String> snapshot = new LinkedHashMap<>();
+        snapshot.put("tasks", gson.toJson(List.of(task)));
+        snapshot.put("epics", gson.toJson(List.of(epic)));
+        snapshot.put("subtasks", gson.toJson(List.of(subtask)));
+        snapshot.put("history", gson.toJson(List.of(epic.getId(), task.getId())));
+        client.saveAll(snapshot);
+
+        HttpTaskManager loaded = new HttpTaskManager(url, client.getApiToken());
+        loaded.load();
+
+        assertEquals(List.of(epic, task), loaded.getHistoryManager().getHistory(), "История не восстановлена");
+        assertEquals(List.of(subtask), loaded.getListOfSubtask(), "Подзадачи не восстановлены");
+    }
+
+    /**
+     * Снимок из COLD_START_SIZE задач, эпиков и подзадач читается одним проходом
+     */
+    @Test
+    void shouldLoadSnapshotInOnePass() throws IOException {
+        String url = "http://localhost:" + KVServer.PORT + "/";
+        KVTaskClient client = new KVTaskClient(url);
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        StringWriter document = new StringWriter();
+        try (JsonWriter writer = gson.newJsonWriter(document)) {
+            writer.beginObject();
+            writer.name("tasks").beginArray();
+            for (long id = 1; id <= COLD_START_SIZE; id++) {
+                Task loadedTask;
+                if (id % 10 == 1) {
+                    loadedTask = new Epic("Epic " + id, "Description " + id);
+                } else if (id % 2 == 0) {
+                    loadedTask = new Subtask("Subtask " + id, "Description " + id, id - id % 10 + 1);
+                } else {
+                    loadedTask = new Task("Task " + id, "Description " + id);
+                }
+                loadedTask.setId(id);
+                loadedTask.setStatus(Status.NEW);
+                if (loadedTask.getType() != TypesTasks.EPIC) {
+                    loadedTask.setStartTime(start.plusMinutes(30 * id));
+                    loadedTask.setDuration(Duration.ofMinutes(20));
+                }
+                gson.toJson(loadedTask, loadedTask.getClass(), writer);
+            }
+            writer.endArray();
+            writer.name("history").beginArray();
+            for (long id = COLD_START_SIZE; id > COLD_START_SIZE - HISTORY_SIZE; id--) {
+                writer.value(id);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+        client.saveAll(Map.of("snapshot", document.toString()));
+
+        HttpTaskManager loaded = new HttpTaskManager(url, client.getApiToken());
+        loaded.load();
+
+        assertEquals(COLD_START_SIZE / 10, loaded.getListOfEpic().size(), "Загружены не все эпики");
+        assertEquals(COLD_START_SIZE / 2, loaded.getListOfSubtask().size(), "Загружены не все подзадачи");
+        assertEquals(COLD_START_SIZE, loaded.getCreatedID(), "Счетчик id не восстановлен");
+        List<Task> history = loaded.getHistoryManager().getHistory();
+        assertEquals(HISTORY_SIZE, history.size(), "История не восстановлена");
+        assertEquals(COLD_START_SIZE, history.get(0).getId(), "Неверный порядок истории");
+    }
+
+    @Test
+    void shouldSaveAndLoadBatchAllOrNothing() {
+        KVTaskClient client = new KVTaskClient("http://localhost:" + KVServer.PORT + "/");
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("first", "value 1");
+        values.put("second", "value 2");
+
+        client.saveAll(values);
+        values.put("first", "value 1.1");
+        values.put("third", "");
+
+        assertThrows(ManagerSaveException.class, () -> client.saveAll(values), "Пустое значение сохранено");
+        assertEquals(Map.of("first", "value 1", "second", "value 2"),
+                client.loadAll(List.of("first", "second", "third")), "Пакет сохранен частично");
+    }
+}
@@ -124,4 +124,19 @@ class InMemoryHistoryManagerTest {
 
         assertEquals(expectedID, subtask.getId(), "Id сгенерирован неверно");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldEvictOldestTaskOverCapacity() {
+        InMemoryHistoryManager boundedHistory = new InMemoryHistoryManager(2);
+        Task first = new Task(1, "Task 1", "DescriptionTask 1");
+        Task second = new Task(2, "Task 2", "DescriptionTask 2");
+        Task third = new Task(3, "Task 3", "DescriptionTask 3");
+
+        boundedHistory.add(first);
+        boundedHistory.add(second);
+        boundedHistory.add(first);
+        boundedHistory.add(third);
+
+        assertEquals(List.of(first, third), boundedHistory.getHistory(), "Вытеснена не самая старая задача");
+    }
+}
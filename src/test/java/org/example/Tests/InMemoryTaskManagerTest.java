@@ -2,11 +2,347 @@ package org.example.Tests;
 
 import org.example.manager.interfaces_and_utilities.TaskManager;
 import org.example.manager.managers_types.InMemoryTaskManager;
+import org.example.manager.managers_types.TimeSlotIndex;
+import org.example.tasks.Epic;
+import org.example.tasks.Status;
+import org.example.tasks.Subtask;
+import org.example.tasks.Task;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class InMemoryTaskManagerTest extends TaskManagerTest {
 
+    private static final int BULK_SIZE = 2_000;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int RANDOM_TASKS = 2_000;
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int OPERATIONS = 300;
+
     @Override
     TaskManager createTaskManager() {
         return new InMemoryTaskManager();
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldScheduleBulkLoadedTasksInStartOrder() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < BULK_SIZE; i++) {
+            Task task = new Task("Task " + i, "Description " + i);
+            task.setStartTime(start.plusMinutes(30L * i));
+            task.setDuration(Duration.ofMinutes(20));
+            tasks.add(task);
+        }
+        List<Task> shuffled = new ArrayList<>(tasks);
+        Collections.shuffle(shuffled, new Random(42));
+
+        for (Task task : shuffled) {
+            manager.createTasks(task);
+        }
+
+        assertEquals(tasks, manager.getPrioritizedTasks(), "Расписание не упорядочено по времени старта");
+    }
+
+    @Test
+    void shouldNotAddOverlappingTaskToPrioritizedList() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task first = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 1, 0);
+        Task overlapping = new Task("Task 2", "DescriptionTask 2", "2022-08-25 | 10:30", 1, 0);
+        Task adjacent = new Task("Task 3", "DescriptionTask 3", "2022-08-25 | 11:00", 1, 0);
+
+        manager.createTasks(first);
+        manager.createTasks(overlapping);
+        manager.createTasks(adjacent);
+
+        assertEquals(2, manager.getPrioritizedTasks().size(), "Пересекающаяся задача попала в расписание");
+        assertFalse(manager.getPrioritizedTasks().contains(overlapping), "Пересекающаяся задача в расписании");
+    }
+
+    @Test
+    void shouldNotStopOverlapCheckOnZeroLengthTask() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task first = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 1, 0);
+        Task empty = new Task("Task 2", "DescriptionTask 2", "2022-08-25 | 10:00", 0, 0);
+        Task overlapping = new Task("Task 3", "DescriptionTask 3", "2022-08-25 | 10:30", 1, 0);
+
+        manager.createTasks(first);
+        manager.createTasks(empty);
+        manager.createTasks(overlapping);
+
+        assertEquals(List.of(first, empty), manager.getPrioritizedTasks(), "Пересекающаяся задача попала в расписание");
+    }
+
+    /**
+     * Проверка интервала по расписанию против перебора всех задач, с задачами нулевой длины
+     */
+    @Test
+    void shouldMatchFullScanOnRandomSchedule() {
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        Random random = new Random(42);
+        TimeSlotIndex index = new TimeSlotIndex();
+        List<Task> scheduled = new ArrayList<>();
+        for (int i = 0; i < RANDOM_TASKS; i++) {
+            Task task = new Task(i, "Task " + i, "Description " + i);
+            task.setStartTime(start.plusMinutes(10L * random.nextInt(200)));
+            task.setDuration(Duration.ofMinutes(random.nextInt(3) == 0 ? 0 : 10L * (1 + random.nextInt(4))));
+            boolean free = true;
+            for (Task other : scheduled) {
+                if (task.getEndTime().isAfter(other.getStartTime()) && task.getStartTime().isBefore(other.getEndTime())) {
+                    free = false;
+                    break;
+                }
+            }
+
+            assertEquals(free, index.isFree(task, task.getId()), "Проверка пересечения расходится с перебором: " + task);
+            if (free) {
+                index.add(task);
+                scheduled.add(task);
+            }
+        }
+    }
+
+    @Test
+    void shouldCompareEndTimeWithNanos() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0, 0, 500_000_000);
+        Task first = new Task("Task 1", "DescriptionTask 1");
+        first.setStartTime(start);
+        first.setDuration(Duration.ofHours(1));
+        Task overlapping = new Task("Task 2", "DescriptionTask 2");
+        overlapping.setStartTime(start.plusHours(1).minusNanos(1));
+        overlapping.setDuration(Duration.ofMinutes(10));
+        Task adjacent = new Task("Task 3", "DescriptionTask 3");
+        adjacent.setStartTime(start.plusHours(1));
+        adjacent.setDuration(Duration.ofMinutes(10));
+
+        manager.createTasks(first);
+        manager.createTasks(overlapping);
+        manager.createTasks(adjacent);
+
+        assertEquals(List.of(first, adjacent), manager.getPrioritizedTasks(), "Неверная проверка пересечения");
+        assertEquals(start.plusHours(1), first.getEndTime(), "Неверное время окончания");
+        first.setDuration(Duration.ofMinutes(30));
+        assertEquals(start.plusMinutes(30), first.getEndTime(), "Время окончания не пересчитано");
+    }
+
+    /**
+     * Проверка пересечения по примитивам совпадает с проверкой через LocalDateTime на том же расписании
+     */
+    @Test
+    void shouldMatchDateTimeOverlapCheck() {
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0);
+        TimeSlotIndex index = new TimeSlotIndex();
+        Task[] scheduled = new Task[BATCH_SIZE];
+        Task[] probes = new Task[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            scheduled[i] = new Task(i, "Task " + i, "Description " + i);
+            scheduled[i].setStartTime(start.plusMinutes(30L * i));
+            scheduled[i].setDuration(Duration.ofMinutes(20));
+            index.add(scheduled[i]);
+            probes[i] = new Task(-i - 1, "Probe " + i, "Description " + i);
+            probes[i].setStartTime(start.plusMinutes(30L * i + 10 * (i % 3)));
+            probes[i].setDuration(Duration.ofMinutes(10));
+        }
+
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            assertEquals(!overlapsByDateTime(scheduled[i], probes[i]), index.isFree(probes[i], probes[i].getId()),
+                    "Проверки пересечения расходятся для задачи " + i);
+        }
+    }
+
+    @Test
+    void shouldRescheduleTaskOnUpdate() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task task = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 1, 0);
+        manager.createTasks(task);
+        Task newTask = new Task("Task 1.1", "DescriptionTask 1", "2022-08-26 | 10:00", 1, 0);
+        newTask.setId(task.getId());
+
+        manager.updateTask(newTask);
+        Task other = new Task("Task 2", "DescriptionTask 2", "2022-08-25 | 10:00", 1, 0);
+        manager.createTasks(other);
+
+        assertEquals(2, manager.getPrioritizedTasks().size(), "Старый интервал задачи не освободился");
+        assertEquals(other, manager.getPrioritizedTasks().get(0), "Задачи не упорядочены по времени");
+    }
+
+    @Test
+    void shouldKeepTasksWithSameStartTime() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task first = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 0, 0);
+        Task second = new Task("Task 2", "DescriptionTask 2", "2022-08-25 | 10:00", 0, 0);
+        manager.createTasks(first);
+        manager.createTasks(second);
+
+        manager.deleteTaskForID(second.getId());
+
+        assertEquals(List.of(first), manager.getPrioritizedTasks(), "Удалена не та задача");
+    }
+
+    @Test
+    void shouldRemoveDeletedTaskFromPrioritizedList() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task task = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 1, 0);
+        manager.createTasks(task);
+
+        manager.deleteTaskForID(task.getId());
+
+        assertTrue(manager.getPrioritizedTasks().isEmpty(), "Удаленная задача осталась в расписании");
+    }
+
+    @Test
+    void shouldGetPageOfPrioritizedTasks() {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task first = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 12:00", 1, 0);
+        Task second = new Task("Task 2", "DescriptionTask 2", "2022-08-25 | 11:00", 1, 0);
+        Task third = new Task("Task 3", "DescriptionTask 3", "2022-08-25 | 10:00", 1, 0);
+        manager.createTasks(first);
+        manager.createTasks(second);
+        manager.createTasks(third);
+
+        assertEquals(List.of(second, first), manager.getPrioritizedTasks(1, 5), "Неверная страница расписания");
+        assertEquals(List.of(third, second, first), manager.getPrioritizedTasks(), "Неверный порядок расписания");
+    }
+
+    @Test
+    void shouldPublishUpdateToReaderHoldingTask() throws Exception {
+        InMemoryTaskManager manager = new InMemoryTaskManager();
+        Task task = new Task("Task 1", "DescriptionTask 1", "2022-08-25 | 10:00", 1, 0);
+        manager.createTasks(task);
+        Task held = manager.getTaskByIdWithoutStory(task.getId());
+        Task newTask = new Task("Task 1.1", "DescriptionTask 1.1", "2022-08-26 | 10:00", 2, 0);
+        newTask.setId(task.getId());
+
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> reader = thread.submit(() -> {
+                while (!Duration.ofHours(2).equals(held.getDuration())) {
+                    Thread.onSpinWait();
+                }
+                return held.getNameTask() + "," + held.getStartTime();
+            });
+            manager.updateTask(newTask);
+
+            assertEquals("Task 1.1,2022-08-26T10:00", reader.get(5, TimeUnit.SECONDS),
+                    "Читатель не увидел обновление задачи");
+        } finally {
+            thread.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldKeepSameStateUnderConcurrentWritesAndReads() throws Exception {
+        InMemoryTaskManager serial = new InMemoryTaskManager();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            writeScript(serial, writer);
+        }
+
+        InMemoryTaskManager concurrent = new InMemoryTaskManager();
+        ExecutorService threads = Executors.newFixedThreadPool(WRITERS + READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                readers.add(threads.submit(() -> {
+                    while (writing.get()) {
+                        LocalDateTime previousStart = LocalDateTime.MIN;
+                        for (Task task : concurrent.getPrioritizedTasks()) {
+                            assertTrue(task.getStartTime().isAfter(previousStart), "Расписание не упорядочено");
+                            previousStart = task.getStartTime();
+                        }
+                        for (Task task : concurrent.getListOfTask()) {
+                            concurrent.getTaskByID(task.getId());
+                        }
+                    }
+                }));
+            }
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                final int writer = i;
+                writers.add(threads.submit(() -> writeScript(concurrent, writer)));
+            }
+            for (Future<?> future : writers) {
+                future.get();
+            }
+            writing.set(false);
+            for (Future<?> future : readers) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertEquals(serial.getCreatedID(), concurrent.getCreatedID(), "Id выданы повторно или пропущены");
+        assertEquals(describe(serial), describe(concurrent), "Состояние отличается от последовательного запуска");
+    }
+
+    private static boolean overlapsByDateTime(Task scheduled, Task probe) {
+        return scheduled.getEndTime().isAfter(probe.getStartTime())
+                && probe.getEndTime().isAfter(scheduled.getStartTime());
+    }
+
+    /**
+     * Действия одного писателя: эпик, задачи и подзадачи в своих интервалах времени, смена статусов
+     */
+    private static void writeScript(InMemoryTaskManager manager, int writer) {
+        LocalDateTime start = LocalDateTime.of(2022, 8, 25, 10, 0).plusHours((long) writer * OPERATIONS);
+        Epic epic = new Epic("Epic " + writer, "Description " + writer);
+        manager.createTasks(epic);
+        for (int i = 0; i < OPERATIONS; i++) {
+            Task task = new Task("Task " + writer + "." + i, "Description " + i);
+            task.setStartTime(start.plusMinutes(60L * i));
+            task.setDuration(Duration.ofMinutes(20));
+            manager.createTasks(task);
+
+            Subtask subtask = new Subtask("Subtask " + writer + "." + i, "Description " + i, epic.getId());
+            subtask.setStartTime(start.plusMinutes(60L * i + 30));
+            subtask.setDuration(Duration.ofMinutes(20));
+            manager.createTasks(subtask);
+            if (i % 3 == 0) {
+                manager.setStatusForSubtask(subtask, Status.DONE);
+            }
+            if (i % 5 == 0) {
+                manager.setStatusForTask(task, Status.IN_PROGRESS);
+            }
+        }
+    }
+
+    /**
+     * Состояние менеджера без id: при параллельной записи id раздаются в другом порядке
+     */
+    private static List<String> describe(InMemoryTaskManager manager) {
+        List<String> state = new ArrayList<>();
+        for (Task task : manager.getListOfTask()) {
+            state.add(task.getNameTask() + "," + task.getStatus() + "," + task.getStartTime() + "," + task.getDuration());
+        }
+        for (Task task : manager.getListOfSubtask()) {
+            state.add(task.getNameTask() + "," + task.getStatus() + "," + task.getStartTime() + "," + task.getDuration()
+                    + "," + manager.getEpicByIdWithoutStory(task.getEpicId()).getNameTask());
+        }
+        for (Task task : manager.getListOfEpic()) {
+            Epic epic = (Epic) task;
+            state.add(epic.getNameTask() + "," + epic.getStatus() + "," + epic.getStartTime() + ","
+                    + epic.getDuration() + "," + epic.getEndTime() + "," + epic.getIdsOfSubtasksEpic().size());
+        }
+        Collections.sort(state);
+        for (Task task : manager.getPrioritizedTasks()) {
+            state.add(task.getNameTask());
+        }
+        return state;
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.Tests;
+
+import org.example.manager.exceptions.ManagerSaveException;
+import org.example.manager.http.KVTaskClient;
+import org.example.manager.interfaces_and_utilities.Managers;
+import org.example.server.ExecutorMode;
+import org.example.server.FileKVStorage;
+import org.example.server.HttpServerSettings;
+import org.example.server.KVServer;
+import org.example.server.KVStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KVServerTest {
+    private static final String URL = "http://localhost:" + KVServer.PORT + "/";
+    private static final int CLIENTS = 8;
+    private static final int OPERATIONS = 200;
+    private static final int RECOVERY_SIZE = 5_000;
+    private static final long QUOTA = 64L << 20;
+    private static final int CONNECTIONS = 1000;
+
+    KVServer server;
+    ExecutorService clients;
+
+    @BeforeAll
+    static void applyServerSettings() {
+        HttpServerSettings.applyForConcurrentClients();
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = Managers.getDefaultKVServer();
+        clients = Executors.newFixedThreadPool(CLIENTS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        clients.shutdownNow();
+        server.stop();
+    }
+
+    @Test
+    void shouldKeepAllWritesFromParallelClients() throws Exception {
+        final String apiToken = new KVTaskClient(URL).getApiToken();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            final int clientNumber = i;
+            futures.add(clients.submit(() -> {
+                KVTaskClient client = new KVTaskClient(URL, apiToken);
+                for (int j = 0; j < OPERATIONS; j++) {
+                    client.append("log", clientNumber + "-" + j + "\n");
+                    client.put("client." + clientNumber, String.valueOf(j));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        KVTaskClient client = new KVTaskClient(URL, apiToken);
+        Set<String> lines = client.load("log").lines().collect(Collectors.toSet());
+        assertEquals(CLIENTS * OPERATIONS, lines.size(), "Часть дописанных записей потеряна");
+        for (int i = 0; i < CLIENTS; i++) {
+            assertEquals(String.valueOf(OPERATIONS - 1), client.load("client." + i), "Значение клиента потеряно");
+        }
+    }
+
+    @Test
+    void shouldNotExposePartiallySavedBatch() throws Exception {
+        final String apiToken = new KVTaskClient(URL).getApiToken();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Future<?> writer = clients.submit(() -> {
+            KVTaskClient client = new KVTaskClient(URL, apiToken);
+            try {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    client.saveAll(Map.of("first", String.valueOf(i), "second", String.valueOf(i)));
+                }
+            } finally {
+                writing.set(false);
+            }
+        });
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 1; i < CLIENTS; i++) {
+            readers.add(clients.submit(() -> {
+                KVTaskClient client = new KVTaskClient(URL, apiToken);
+                while (writing.get()) {
+                    Map<String, String> values = client.loadAll(List.of("first", "second"));
+                    assertEquals(values.get("first"), values.get("second"), "Пакет прочитан частично");
+                }
+            }));
+        }
+
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+    }
+
+    @Test
+    void shouldRecoverValuesFromDiskAfterRestart() throws IOException {
+        File directory = Files.createTempDirectory("kv").toFile();
+        server.stop();
+        server = new KVServer(new FileKVStorage(directory, FileKVStorage.SyncPolicy.OS, 3), QUOTA, QUOTA);
+        server.start();
+        KVTaskClient client = new KVTaskClient(URL);
+        Map<String, String> values = new HashMap<>();
+        String value = "x".repeat(200);
+        for (int i = 0; i < RECOVERY_SIZE; i++) {
+            values.put("key." + i, value + i);
+        }
+        client.saveAll(values);
+        client.put("single", "value 1");
+        client.append("log", "line 1\n");
+        client.append("log", "line 2\n");
+        client.delete("key.0");
+        server.stop();
+
+        server = new KVServer(new FileKVStorage(directory, FileKVStorage.SyncPolicy.OS, 3), QUOTA, QUOTA);
+        server.start();
+        client = new KVTaskClient(URL, client.getApiToken());
+
+        assertEquals("value 1", client.load("single"), "Значение не восстановлено");
+        assertEquals("line 1\nline 2\n", client.load("log"), "Дописанные строки не восстановлены");
+        assertEquals(value + (RECOVERY_SIZE - 1), client.load("key." + (RECOVERY_SIZE - 1)),
+                "Значение из пакета не восстановлено");
+        assertNull(client.loadIfPresent("key.0"), "Удаленный ключ восстановлен");
+    }
+
+    @Test
+    void shouldIsolateNamespacesOfDifferentTokens() {
+        KVTaskClient first = new KVTaskClient(URL);
+        KVTaskClient second = new KVTaskClient(URL);
+
+        first.put("tasks", "first tasks");
+        second.put("tasks", "second tasks");
+
+        assertNotEquals(first.getApiToken(), second.getApiToken(), "Токены совпадают");
+        assertEquals("first tasks", first.load("tasks"), "Значение перезаписано другим клиентом");
+        assertEquals("second tasks", second.load("tasks"), "Значение перезаписано другим клиентом");
+        assertThrows(ManagerSaveException.class, () -> new KVTaskClient(URL, "unknown").load("tasks"),
+                "Неизвестный токен получил доступ");
+    }
+
+    @Test
+    void shouldRejectWritesOverQuotaAndEvictColdNamespaces() throws IOException {
+        server.stop();
+        server = new KVServer(new KVStorage(), 1_000, 2_000);
+        server.start();
+        KVTaskClient cold = new KVTaskClient(URL);
+        KVTaskClient warm = new KVTaskClient(URL);
+        KVTaskClient heavy = new KVTaskClient(URL);
+
+        assertThrows(ManagerSaveException.class, () -> heavy.put("big", "x".repeat(600)), "Квота не проверена");
+        cold.put("value", "c".repeat(300));
+        warm.put("value", "w".repeat(300));
+        cold.load("value");
+        warm.load("value");
+        heavy.put("value", "h".repeat(300));
+
+        assertNull(cold.loadIfPresent("value"), "Холодное пространство не вытеснено");
+        assertEquals("w".repeat(300), warm.load("value"), "Вытеснено недавно использованное пространство");
+        assertEquals("h".repeat(300), heavy.load("value"), "Пишущее пространство вытеснено");
+    }
+
+    @Test
+    void shouldServeThousandConcurrentConnectionsInEveryExecutorMode() throws IOException {
+        for (ExecutorMode mode : ExecutorMode.values()) {
+            server.stop();
+            server = new KVServer(new KVStorage(), mode, KVServer.DEFAULT_POOL_SIZE);
+            server.start();
+            KVTaskClient client = new KVTaskClient(URL);
+
+            List<CompletableFuture<Void>> requests = new ArrayList<>();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                requests.add(client.putAsync("key." + i, "value " + i));
+            }
+            CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[0])).join();
+
+            assertEquals("value " + (CONNECTIONS - 1), client.load("key." + (CONNECTIONS - 1)),
+                    "Значение не сохранено в режиме " + mode);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.Tests;
+
+import org.example.manager.managers_types.LongMap;
+import org.example.tasks.Task;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongMapTest {
+    private static final int RANDOM_OPERATIONS = 200_000;
+    private static final int RANDOM_IDS = 5_000;
+    private static final int GROWTH_SIZE = 50_000;
+
+    @Test
+    void shouldMatchHashMapOnRandomOperations() {
+        Map<Long, String> expected = new HashMap<>();
+        LongMap<String> actual = new LongMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < RANDOM_OPERATIONS; i++) {
+            final long id = random.nextInt(RANDOM_IDS) * 31L;
+            switch (random.nextInt(4)) {
+                case 0:
+                    assertEquals(expected.remove(id), actual.remove(id), "Удалено другое значение");
+                    break;
+                case 1:
+                    assertEquals(expected.get(id), actual.get(id), "Прочитано другое значение");
+                    break;
+                default:
+                    assertEquals(expected.put(id, "value " + i), actual.put(id, "value " + i),
+                            "Заменено другое значение");
+            }
+        }
+
+        assertEquals(expected, actual, "Содержимое отличается от HashMap");
+        assertEquals(new HashSet<>(expected.values()), new HashSet<>(actual.values()), "Значения отличаются");
+        actual.clear();
+        assertTrue(actual.isEmpty(), "Таблица не очищена");
+    }
+
+    @Test
+    void shouldReadWithoutLocksWhileWriting() throws Exception {
+        LongMap<Long> map = new LongMap<>();
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<?> reader = threads.submit(() -> {
+                Random random = new Random(7);
+                while (writing.get()) {
+                    final long id = random.nextInt(RANDOM_OPERATIONS);
+                    Long value = map.get(id);
+                    if (value != null) {
+                        assertEquals(id, value.longValue(), "Прочитано значение другого id");
+                    }
+                    for (Long stored : map.values()) {
+                        assertNotNull(stored, "Обход вернул пустое значение");
+                    }
+                }
+            });
+            for (long id = 0; id < RANDOM_OPERATIONS; id++) {
+                map.put(id, Long.valueOf(id));
+                if (id % 3 == 0) {
+                    map.remove(id / 2);
+                }
+            }
+            writing.set(false);
+            reader.get();
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldFindSequentialIdsAfterGrowth() {
+        LongMap<Task> map = new LongMap<>();
+        for (long id = 1; id <= GROWTH_SIZE; id++) {
+            map.put(id, new Task(id, "Task " + id, "Description " + id));
+        }
+        for (long id = 2; id <= GROWTH_SIZE; id += 2) {
+            map.remove(id);
+        }
+
+        assertEquals(GROWTH_SIZE / 2, map.size(), "Неверный размер таблицы");
+        for (long id = 1; id <= GROWTH_SIZE; id++) {
+            Task task = map.get(id);
+            if (id % 2 == 0) {
+                assertNull(task, "Удаленная задача найдена");
+            } else {
+                assertEquals(id, task.getId(), "Найдена задача другого id");
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.Tests;
+
+import org.example.manager.interfaces_and_utilities.HistoryManager;
+import org.example.manager.managers_types.InMemoryHistoryManager;
+import org.example.manager.managers_types.PrimitiveHistoryManager;
+import org.example.tasks.Task;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrimitiveHistoryManagerTest {
+    private static final int RANDOM_OPERATIONS = 100_000;
+    private static final int RANDOM_IDS = 1_000;
+    private static final int GROWTH_SIZE = 10_000;
+
+    @Test
+    void shouldMatchLinkedHistoryOnRandomOperations() {
+        HistoryManager expected = new InMemoryHistoryManager(RANDOM_IDS / 4);
+        HistoryManager actual = new PrimitiveHistoryManager(RANDOM_IDS / 4);
+        Random random = new Random(42);
+        Task[] tasks = new Task[RANDOM_IDS];
+        for (int i = 0; i < RANDOM_IDS; i++) {
+            tasks[i] = new Task(i * 1_024L, "Task " + i, "Description " + i);
+        }
+
+        for (int i = 0; i < RANDOM_OPERATIONS; i++) {
+            Task task = tasks[random.nextInt(RANDOM_IDS)];
+            if (random.nextInt(4) == 0) {
+                expected.remove(task.getId());
+                actual.remove(task.getId());
+            } else {
+                expected.add(task);
+                actual.add(task);
+            }
+        }
+
+        assertEquals(expected.getHistory(), actual.getHistory(), "История отличается от связного списка");
+    }
+
+    @Test
+    void shouldReuseCellsOfRemovedTasks() {
+        PrimitiveHistoryManager historyManager = new PrimitiveHistoryManager();
+        Task first = new Task(1, "Task 1", "DescriptionTask 1");
+        Task second = new Task(2, "Task 2", "DescriptionTask 2");
+
+        historyManager.add(first);
+        historyManager.remove(first.getId());
+        historyManager.remove(first.getId());
+        historyManager.add(second);
+        historyManager.add(first);
+
+        assertEquals(List.of(second, first), historyManager.getHistory(), "Неверный порядок истории");
+        assertEquals(2, historyManager.size(), "Неверный размер истории");
+    }
+
+    /**
+     * Рост таблиц без ограничения размера: заполнение истории и просмотры уже добавленных задач вразброс
+     */
+    @Test
+    void shouldMatchLinkedHistoryWhileGrowing() {
+        HistoryManager expected = new InMemoryHistoryManager();
+        HistoryManager actual = new PrimitiveHistoryManager();
+        Task[] tasks = new Task[GROWTH_SIZE];
+        for (int i = 0; i < GROWTH_SIZE; i++) {
+            tasks[i] = new Task(i, "Task " + i, "Description " + i);
+            expected.add(tasks[i]);
+            actual.add(tasks[i]);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < GROWTH_SIZE; i++) {
+            Task task = tasks[random.nextInt(GROWTH_SIZE)];
+            expected.add(task);
+            actual.add(task);
+        }
+
+        assertEquals(GROWTH_SIZE, actual.getHistory().size(), "В истории дубликаты");
+        assertEquals(expected.getHistory(), actual.getHistory(), "История отличается от связного списка");
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.Tests;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.example.manager.interfaces_and_utilities.Managers;
+import org.example.tasks.Epic;
+import org.example.tasks.Subtask;
+import org.example.tasks.Task;
+import org.example.tasks.TypesTasks;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskTest {
+
+    @Test
+    void shouldWriteTimeToJson() {
+        Gson gson = Managers.getGson();
+        Subtask subtask = new Subtask("Subtask", "Description", "2022-08-25 | 10:00", 0, 30, 7);
+        subtask.setId(8);
+
+        String json = gson.toJson(subtask);
+        assertTrue(json.contains("\"startTime\":\"2022-08-25T10:00:00\""), "Неверный формат времени старта");
+        assertTrue(json.contains("\"duration\":1800"), "Неверный формат продолжительности");
+        assertEquals(subtask, gson.fromJson(json, Subtask.class), "Задача не восстановлена из json");
+        assertEquals(LocalDateTime.of(2022, 8, 25, 10, 30), subtask.getEndTime(), "Неверное время окончания");
+    }
+
+    @Test
+    void shouldRestoreTaskTypesFromList() {
+        Gson gson = Managers.getGson();
+        Task task = new Task(1, "Task", "Description");
+        task.setStartTime(LocalDateTime.of(2022, 8, 25, 10, 0, 0, 123_456_789));
+        task.setDuration(Duration.ofSeconds(-5, 1));
+        Epic epic = new Epic("Epic", "Description");
+        epic.setId(2);
+        epic.setStartTime(LocalDateTime.MAX);
+        epic.setEndTime(LocalDateTime.MIN);
+        epic.setDuration(Duration.between(LocalDateTime.MAX, LocalDateTime.MIN));
+        Subtask subtask = new Subtask("Subtask", "Description", "2022-08-25 | 10:00", 0, 30, 2);
+        subtask.setId(3);
+        epic.addSubtask(subtask);
+        List<Task> tasks = List.of(task, epic, subtask);
+
+        List<Task> restored = gson.fromJson(gson.toJson(tasks), new TypeToken<List<Task>>() {
+        }.getType());
+
+        assertEquals(tasks, restored, "Задачи не восстановлены из json");
+        assertEquals(Epic.class, restored.get(1).getClass(), "Эпик прочитан не как эпик");
+        assertEquals(Subtask.class, restored.get(2).getClass(), "Подзадача прочитана не как подзадача");
+    }
+
+    @Test
+    void shouldReadDurationInPreviousFormat() {
+        Task task = Managers.getGson().fromJson("{\"id\":1,\"name\":\"Task\",\"status\":\"NEW\","
+                + "\"startTime\":\"2022-08-25T10:00:00\",\"duration\":{\"seconds\":1800,\"nanos\":5}}", Task.class);
+
+        assertEquals(Duration.ofSeconds(1800, 5), task.getDuration(), "Неверная продолжительность");
+        assertEquals(LocalDateTime.of(2022, 8, 25, 10, 30, 0, 5), task.getEndTime(), "Неверное время окончания");
+    }
+
+    @Test
+    void shouldLeaveMissingTimeEmpty() {
+        Epic epic = Managers.getGson().fromJson("{\"id\":1,\"name\":\"Epic\",\"status\":\"NEW\"}", Epic.class);
+
+        assertNull(epic.getStartTime(), "Время старта задано без json");
+        assertNull(epic.getDuration(), "Продолжительность задана без json");
+        assertNull(epic.getEndTime(), "Время окончания задано без json");
+        assertTrue(epic.getIdsOfSubtasksEpic().isEmpty(), "Подзадачи эпика не пусты");
+    }
+
+    @Test
+    void shouldCarryNanosecondsIntoEndTime() {
+        Task task = new Task(1, "Task", "Description");
+        task.setStartTime(LocalDateTime.of(2022, 8, 25, 10, 0, 0, 700_000_000));
+        task.setDuration(Duration.ofSeconds(30, 500_000_000));
+
+        assertEquals(LocalDateTime.of(2022, 8, 25, 10, 0, 31, 200_000_000), task.getEndTime(),
+                "Неверное время окончания");
+        assertEquals(Duration.ofSeconds(30, 500_000_000), task.getDuration(), "Неверная продолжительность");
+
+        task.setStartTime(null);
+        assertNull(task.getStartTime(), "Время старта не сброшено");
+        assertNull(task.getEndTime(), "Время окончания без времени старта");
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void shouldIgnoreTypeInDeprecatedSetter() {
+        Subtask subtask = new Subtask("Subtask", "Description", 1);
+
+        subtask.setType(TypesTasks.SUBTASK);
+        subtask.setType(TypesTasks.EPIC);
+        assertEquals(TypesTasks.SUBTASK, subtask.getType(), "Тип подзадачи изменился");
+    }
+}